@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonPrimitive;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Publishing a numeric value of an owned state with
+ * {@link JetPeer#change(String, com.google.gson.JsonElement, ResponseCallback, int)}
+ * compared to the pre-encoded {@link StateHandle}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChangeBenchmark {
+
+    private JetPeer peer;
+    private StateHandle handle;
+    private double value;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        peer = new JetPeer(InMemoryConnection.discarding());
+        peer.connect(new ConnectionCompleted() {
+            @Override
+            public void completed(boolean success) {
+            }
+        }, 0);
+        handle = peer.addState("benchmark/state", new JsonPrimitive(0), null, 1000, null, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        peer.close();
+    }
+
+    @Benchmark
+    public void peerChange() {
+        value += 0.25;
+        peer.change("benchmark/state", new JsonPrimitive(value), null, 0);
+    }
+
+    @Benchmark
+    public void handleChangeDouble() {
+        value += 0.25;
+        handle.change(value);
+    }
+
+    @Benchmark
+    public void handleChangeJsonElement() {
+        value += 0.25;
+        handle.change(new JsonPrimitive(value));
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing and dispatching incoming fetch notifications in
+ * {@link JetPeer#update(java.util.Observable, Object)} with {@code fetches}
+ * registered fetches. The {@code batched} benchmark delivers
+ * {@value #BATCH_SIZE} notifications in one JSON-RPC batch and reports the
+ * time per notification.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    static final int BATCH_SIZE = 16;
+
+    @Param({"1", "100", "10000"})
+    public int fetches;
+
+    private InMemoryConnection connection;
+    private JetPeer peer;
+    private String[] single;
+    private String[] batched;
+    private int next;
+    private long events;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        connection = InMemoryConnection.discarding();
+        peer = new JetPeer(connection);
+        peer.connect(new ConnectionCompleted() {
+            @Override
+            public void completed(boolean success) {
+            }
+        }, 0);
+
+        FetchEventCallback callback = new FetchEventCallback() {
+            @Override
+            public void onFetchEvent(JsonObject params) {
+                events++;
+            }
+        };
+
+        int[] ids = new int[fetches];
+        for (int i = 0; i < fetches; i++) {
+            Matcher matcher = new Matcher();
+            matcher.equals = "benchmark/state/" + i;
+            ids[i] = peer.fetch(matcher, callback, null, 0).getId();
+        }
+
+        single = new String[1024];
+        batched = new String[single.length];
+        for (int i = 0; i < single.length; i++) {
+            single[i] = notification(ids[i % fetches], i);
+
+            StringBuilder batch = new StringBuilder("[");
+            for (int j = 0; j < BATCH_SIZE; j++) {
+                if (j > 0) {
+                    batch.append(',');
+                }
+                batch.append(notification(ids[(i + j) % fetches], i + j));
+            }
+            batch.append(']');
+            batched[i] = batch.toString();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        peer.close();
+    }
+
+    @Benchmark
+    public long single() {
+        connection.receive(single[next++ & (single.length - 1)]);
+        return events;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long batched() {
+        connection.receive(batched[next++ & (batched.length - 1)]);
+        return events;
+    }
+
+    private static String notification(int fetchId, int value) {
+        return "{\"jsonrpc\":\"2.0\",\"method\":" + fetchId
+                + ",\"params\":{\"event\":\"change\",\"path\":\"benchmark/state/" + value
+                + "\",\"value\":" + value + "}}";
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
+import org.java_websocket.server.WebSocketServer;
+
+/**
+ * A local stand-in for a jet daemon that answers every request with its own
+ * parameters as result. Used to measure the transport overhead of a request
+ * without any daemon logic involved.
+ */
+abstract class EchoServer implements Closeable {
+
+    private static final JsonParser PARSER = new JsonParser();
+
+    static String respond(String request) {
+        JsonObject object = PARSER.parse(request).getAsJsonObject();
+        JsonObject response = new JsonObject();
+        response.addProperty("jsonrpc", "2.0");
+        response.add("id", object.get("id"));
+        JsonElement params = object.get("params");
+        response.add("result", params);
+        return response.toString();
+    }
+
+    static EchoServer websocket() throws InterruptedException {
+        WebSocketEchoServer server = new WebSocketEchoServer();
+        server.start();
+        server.started.await();
+        return server;
+    }
+
+    static FramedEchoServer tcp() throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.bind(new InetSocketAddress("localhost", 0));
+        return new FramedEchoServer(channel);
+    }
+
+    static FramedEchoServer unix(String path) throws IOException {
+        ServerSocketChannel channel = UnixDomainSockets.openServerChannel();
+        channel.bind(UnixDomainSockets.address(path));
+        return new FramedEchoServer(channel);
+    }
+
+    abstract int getPort();
+
+    static class FramedEchoServer extends EchoServer implements Runnable {
+
+        private final ServerSocketChannel server;
+
+        private FramedEchoServer(ServerSocketChannel server) {
+            this.server = server;
+            Thread acceptor = new Thread(this, "echo-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        @Override
+        int getPort() {
+            try {
+                SocketAddress address = server.getLocalAddress();
+                return ((InetSocketAddress) address).getPort();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final SocketChannel channel = server.accept();
+                    Thread worker = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            serve(channel);
+                        }
+                    }, "echo-worker");
+                    worker.setDaemon(true);
+                    worker.start();
+                }
+            } catch (IOException e) {
+                /*
+                 * Server closed.
+                 */
+            }
+        }
+
+        private void serve(SocketChannel channel) {
+            try (SocketChannel ch = channel) {
+                DataInputStream in = new DataInputStream(Channels.newInputStream(ch));
+                while (true) {
+                    byte[] request = new byte[in.readInt()];
+                    in.readFully(request);
+
+                    byte[] response = respond(new String(request, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+                    ByteBuffer buffer = ByteBuffer.allocate(4 + response.length);
+                    buffer.putInt(response.length).put(response).flip();
+                    while (buffer.hasRemaining()) {
+                        ch.write(buffer);
+                    }
+                }
+            } catch (EOFException e) {
+                /*
+                 * Client closed the connection.
+                 */
+            } catch (IOException e) {
+                /*
+                 * Connection failed, nothing to do for a stand-in.
+                 */
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+        }
+    }
+
+    static class WebSocketEchoServer extends EchoServer {
+
+        private final Server server;
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private WebSocketEchoServer() {
+            Draft draft = new Draft_6455(Collections.emptyList(), Collections.<IProtocol>singletonList(new Protocol("jet")));
+            this.server = new Server(draft);
+        }
+
+        private void start() {
+            server.start();
+        }
+
+        @Override
+        int getPort() {
+            return server.getPort();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                server.stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private class Server extends WebSocketServer {
+
+            private Server(Draft draft) {
+                super(new InetSocketAddress("localhost", 0), Collections.singletonList(draft));
+            }
+
+            @Override
+            public void onOpen(WebSocket conn, ClientHandshake handshake) {
+            }
+
+            @Override
+            public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+            }
+
+            @Override
+            public void onMessage(WebSocket conn, String message) {
+                conn.send(respond(message));
+            }
+
+            @Override
+            public void onError(WebSocket conn, Exception ex) {
+            }
+
+            @Override
+            public void onStart() {
+                started.countDown();
+            }
+        }
+    }
+}
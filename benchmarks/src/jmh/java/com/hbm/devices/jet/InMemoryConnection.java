@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+/**
+ * A {@link JetConnection} without a daemon behind it.
+ *
+ * Outgoing messages are passed to the {@link Responder}, which might answer
+ * them synchronously with {@link #receive(String)}. This keeps the network
+ * out of the benchmarks, so only the costs of the library itself are
+ * measured.
+ */
+class InMemoryConnection extends JetConnection {
+
+    interface Responder {
+
+        void onMessage(InMemoryConnection connection, String message);
+    }
+
+    private final Responder responder;
+    private volatile boolean connected;
+
+    InMemoryConnection(Responder responder) {
+        this.responder = responder;
+    }
+
+    /**
+     * Answers each request with {@code "result": true} and drops every other
+     * message.
+     */
+    static InMemoryConnection answering() {
+        return new InMemoryConnection(new Responder() {
+            @Override
+            public void onMessage(InMemoryConnection connection, String message) {
+                int id = requestId(message);
+                if (id > 0) {
+                    connection.receive("{\"jsonrpc\":\"2.0\",\"id\":" + id + ",\"result\":true}");
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops every outgoing message.
+     */
+    static InMemoryConnection discarding() {
+        return new InMemoryConnection(new Responder() {
+            @Override
+            public void onMessage(InMemoryConnection connection, String message) {
+            }
+        });
+    }
+
+    @Override
+    void connect(ConnectionCompleted completed, int timeoutMs) {
+        connected = true;
+        completed.completed(true);
+    }
+
+    @Override
+    void disconnect() {
+        connected = false;
+    }
+
+    @Override
+    boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    void sendMessage(String message) {
+        responder.onMessage(this, message);
+    }
+
+    void receive(String message) {
+        setChanged();
+        notifyObservers(message);
+    }
+
+    /**
+     * Finds the request id without parsing the whole message. A
+     * {@link JetMethod} always serializes its id in front of the parameters.
+     */
+    private static int requestId(String message) {
+        int start = message.indexOf("\"id\":");
+        if (start < 0) {
+            return -1;
+        }
+
+        int id = 0;
+        for (int i = start + 5; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if ((c < '0') || (c > '9')) {
+                break;
+            }
+            id = id * 10 + (c - '0');
+        }
+        return id;
+    }
+}
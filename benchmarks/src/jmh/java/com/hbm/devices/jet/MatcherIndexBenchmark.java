@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Matching a path against {@code matchers} matchers with the
+ * {@link MatcherIndex} compared to evaluating each matcher in turn. The
+ * matchers are a mix of {@code equals}, {@code startsWith},
+ * {@code endsWith} and {@code contains}, half of them case insensitive.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatcherIndexBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int matchers;
+
+    private MatcherIndex<PathMatcher> index;
+    private PathMatcher[] all;
+    private String[] paths;
+    private List<PathMatcher> result;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        index = new MatcherIndex<>();
+        all = new PathMatcher[matchers];
+        for (int i = 0; i < matchers; i++) {
+            Matcher matcher = new Matcher();
+            String device = "device" + random.nextInt(matchers);
+            switch (i % 4) {
+                case 0:
+                    matcher.equals = device + "/channel" + random.nextInt(16) + "/value";
+                    break;
+                case 1:
+                    matcher.startsWith = device + "/";
+                    break;
+                case 2:
+                    matcher.endsWith = "/channel" + random.nextInt(matchers) + "/value";
+                    break;
+                default:
+                    matcher.contains = device + "/channel";
+                    break;
+            }
+            matcher.caseInsensitive = (i % 2) == 0;
+            all[i] = new PathMatcher(matcher);
+            index.add(all[i], all[i]);
+        }
+
+        paths = new String[1024];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = "Device" + random.nextInt(matchers) + "/channel" + random.nextInt(16) + "/value";
+        }
+        result = new ArrayList<>();
+    }
+
+    @Benchmark
+    public int index() {
+        result.clear();
+        index.match(paths[next++ & (paths.length - 1)], result);
+        return result.size();
+    }
+
+    @Benchmark
+    public int linearScan() {
+        result.clear();
+        String path = paths[next++ & (paths.length - 1)];
+        for (PathMatcher matcher : all) {
+            if (matcher.matches(path)) {
+                result.add(matcher);
+            }
+        }
+        return result.size();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creating and serializing an outgoing request, the way {@code JetPeer}
+ * does it for every {@code call()}, {@code set()} and {@code change()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBenchmark {
+
+    private final Gson gson = new GsonBuilder().create();
+    private final JsonPrimitive value = new JsonPrimitive(42.5);
+    private final ResponseCallback callback = new ResponseCallback() {
+        @Override
+        public void onResponse(boolean completed, JsonObject response) {
+        }
+    };
+
+    @Benchmark
+    public JetMethod createChange() {
+        JsonObject parameters = new JsonObject();
+        parameters.addProperty("path", "benchmark/state");
+        parameters.add("value", value);
+        return new JetMethod(JetMethod.CHANGE, parameters, null);
+    }
+
+    @Benchmark
+    public String serializeChange() {
+        JsonObject parameters = new JsonObject();
+        parameters.addProperty("path", "benchmark/state");
+        parameters.add("value", value);
+        JetMethod change = new JetMethod(JetMethod.CHANGE, parameters, null);
+        return gson.toJson(change.getJson());
+    }
+
+    @Benchmark
+    public String serializeCall() {
+        JsonObject parameters = new JsonObject();
+        parameters.addProperty("path", "benchmark/method");
+        parameters.add("args", value);
+        parameters.addProperty("timeout", 5.0);
+        JetMethod call = new JetMethod(JetMethod.CALL, parameters, callback);
+        return gson.toJson(call.getJson());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Registering many states one by one with {@code addState} compared to a
+ * single {@link JetPeer#addStates(java.util.Collection, BulkCallback, int)}.
+ * Every frame is answered synchronously with one response per request, a
+ * batch with a batch of responses.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistrationBenchmark {
+
+    @Param({"1000"})
+    public int states;
+
+    private JetPeer peer;
+    private List<StateDefinition> definitions;
+    private ResponseCallback callback;
+    private BulkCallback bulkCallback;
+    private int responses;
+    private BulkResult result;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        peer = new JetPeer(new InMemoryConnection(new InMemoryConnection.Responder() {
+            private final JsonParser parser = new JsonParser();
+
+            @Override
+            public void onMessage(InMemoryConnection connection, String message) {
+                JsonElement json = parser.parse(message);
+                if (json.isJsonArray()) {
+                    JsonArray responses = new JsonArray();
+                    for (JsonElement request : json.getAsJsonArray()) {
+                        responses.add(createResponse(request.getAsJsonObject()));
+                    }
+                    connection.receive(responses.toString());
+                } else {
+                    connection.receive(createResponse(json.getAsJsonObject()).toString());
+                }
+            }
+        }));
+        peer.connect(new ConnectionCompleted() {
+            @Override
+            public void completed(boolean success) {
+            }
+        }, 0);
+
+        definitions = new ArrayList<>(states);
+        for (int i = 0; i < states; i++) {
+            definitions.add(new StateDefinition("benchmark/state" + i, new JsonPrimitive(i), null));
+        }
+        callback = new ResponseCallback() {
+            @Override
+            public void onResponse(boolean success, JsonObject response) {
+                responses++;
+            }
+        };
+        bulkCallback = new BulkCallback() {
+            @Override
+            public void onCompleted(BulkResult bulkResult) {
+                result = bulkResult;
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        peer.close();
+    }
+
+    @Benchmark
+    public int addStateEach() {
+        responses = 0;
+        for (StateDefinition definition : definitions) {
+            peer.addState(definition.path, definition.value, null, 1000, callback, 5000);
+        }
+        if (responses != states) {
+            throw new IllegalStateException("missing responses");
+        }
+        return responses;
+    }
+
+    @Benchmark
+    public BulkResult addStates() {
+        result = null;
+        peer.addStates(definitions, bulkCallback, 5000);
+        if ((result == null) || !result.isSuccess()) {
+            throw new IllegalStateException("missing responses");
+        }
+        return result;
+    }
+
+    private static JsonObject createResponse(JsonObject request) {
+        JsonObject response = new JsonObject();
+        response.addProperty("jsonrpc", "2.0");
+        response.add("id", request.get("id"));
+        response.addProperty("result", true);
+        return response;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares scheduling and cancelling a response timeout on a
+ * {@link ScheduledThreadPoolExecutor}, as {@code JetPeer} did before, with
+ * the {@link TimingWheel}. Both are preloaded with {@code outstanding}
+ * pending timeouts, so every operation works against a realistically filled
+ * structure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeoutBenchmark {
+
+    private static final long PENDING_TIMEOUT_MS = 3600 * 1000;
+    private static final long REQUEST_TIMEOUT_MS = 5000;
+
+    @Param({"100000"})
+    public int outstanding;
+
+    private ScheduledThreadPoolExecutor executor;
+    private TimingWheel wheel;
+    private TimingWheel.Timeout[] wheelTimeouts;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        executor = new ScheduledThreadPoolExecutor(1);
+        wheel = new TimingWheel(10, 512, new TimingWheel.ExpiryHandler() {
+            @Override
+            public void expired(TimingWheel.Timeout timeout) {
+            }
+        });
+
+        for (int i = 0; i < outstanding; i++) {
+            executor.schedule(new TimeoutTask(), PENDING_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            wheel.schedule(new TimingWheel.Timeout(), PENDING_TIMEOUT_MS);
+        }
+
+        wheelTimeouts = new TimingWheel.Timeout[1024];
+        for (int i = 0; i < wheelTimeouts.length; i++) {
+            wheelTimeouts[i] = new TimingWheel.Timeout();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public boolean executorScheduleAndCancel() {
+        ScheduledFuture<Void> future = executor.schedule(new TimeoutTask(), REQUEST_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        return future.cancel(true);
+    }
+
+    @Benchmark
+    public boolean timingWheelScheduleAndCancel() {
+        TimingWheel.Timeout timeout = wheelTimeouts[next++ & (wheelTimeouts.length - 1)];
+        wheel.schedule(timeout, REQUEST_TIMEOUT_MS);
+        return wheel.cancel(timeout);
+    }
+
+    private static class TimeoutTask implements Callable<Void> {
+
+        @Override
+        public Void call() throws Exception {
+            return null;
+        }
+    }
+}
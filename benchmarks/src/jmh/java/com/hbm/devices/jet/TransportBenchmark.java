@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Round trip latency of a {@code call()} over the different transports
+ * against a local {@link EchoServer}.
+ *
+ * The {@code unix} transport needs Java 16 or newer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportBenchmark {
+
+    @Param({"websocket", "tcp", "unix"})
+    public String transport;
+
+    private EchoServer server;
+    private File socketDirectory;
+    private JetPeer peer;
+    private AsyncPeer asyncPeer;
+    private JsonPrimitive arguments;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        JetConnection connection;
+        switch (transport) {
+            case "websocket":
+                server = EchoServer.websocket();
+                connection = new WebsocketJetConnection("ws://localhost:" + server.getPort() + "/");
+                break;
+            case "tcp":
+                server = EchoServer.tcp();
+                connection = new TcpJetConnection("localhost", server.getPort());
+                break;
+            case "unix":
+                socketDirectory = Files.createTempDirectory("jet").toFile();
+                String path = new File(socketDirectory, "jet.sock").getPath();
+                server = EchoServer.unix(path);
+                connection = new UnixDomainSocketJetConnection(path);
+                break;
+            default:
+                throw new IllegalArgumentException(transport);
+        }
+
+        peer = new JetPeer(connection);
+        asyncPeer = new AsyncPeer(peer);
+        arguments = new JsonPrimitive(42);
+
+        final CountDownLatch connected = new CountDownLatch(1);
+        final AtomicBoolean success = new AtomicBoolean();
+        peer.connect(new ConnectionCompleted() {
+            @Override
+            public void completed(boolean ok) {
+                success.set(ok);
+                connected.countDown();
+            }
+        }, 5000);
+        if (!connected.await(5, TimeUnit.SECONDS) || !success.get()) {
+            throw new IllegalStateException("can't connect via " + transport);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        peer.close();
+        server.close();
+        if (socketDirectory != null) {
+            for (File file : socketDirectory.listFiles()) {
+                file.delete();
+            }
+            socketDirectory.delete();
+        }
+    }
+
+    @Benchmark
+    public JsonObject callRoundTrip() {
+        return asyncPeer.call("echo", arguments, 5000).join();
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A {@link CompletableFuture} based facade for a {@link Peer}.
+ *
+ * Every method sends its request immediately and returns a future that
+ * completes with the JSON-RPC response once it arrives. If the daemon answers
+ * with an error, the future completes exceptionally with a
+ * {@link JsonRpcException} carrying the error code; a missing response yields
+ * a {@link ResponseTimeoutException}.
+ *
+ * No threads are involved: the futures are completed on the thread that
+ * delivers the response, so many requests can be pipelined and combined with
+ * {@link CompletableFuture#allOf(CompletableFuture...)}. Dependent stages
+ * registered without an executor run on that thread as well and should not
+ * block.
+ */
+public class AsyncPeer {
+
+    private final Peer peer;
+
+    public AsyncPeer(Peer peer) {
+        if (peer == null) {
+            throw new NullPointerException("peer");
+        }
+        this.peer = peer;
+    }
+
+    public Peer getPeer() {
+        return peer;
+    }
+
+    /**
+     * @return A future that completes when the peer accepts requests without
+     * holding them back.
+     * @see Peer#whenWritable()
+     */
+    public CompletableFuture<Void> whenWritable() {
+        return peer.whenWritable();
+    }
+
+    public CompletableFuture<JsonObject> config(String peerName, int responseTimeoutMs) {
+        FutureResponse future = new FutureResponse();
+        try {
+            peer.config(peerName, future, responseTimeoutMs);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public CompletableFuture<JsonObject> authenticate(String user, String password, int responseTimeoutMs) {
+        FutureResponse future = new FutureResponse();
+        try {
+            peer.authenticate(user, password, future, responseTimeoutMs);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public CompletableFuture<JsonObject> passwd(String user, String password, int responseTimeoutMs) {
+        FutureResponse future = new FutureResponse();
+        try {
+            peer.passwd(user, password, future, responseTimeoutMs);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Fetches all states and methods matching {@code matcher}.
+     *
+     * @return A future that completes with the id of the fetch when the
+     * daemon acknowledged the fetch. The id is required for
+     * {@link #unfetch(FetchId, int)}. If the fetch fails, it is removed from
+     * the peer, so it isn't restored after a reconnect.
+     */
+    public CompletableFuture<FetchId> fetch(Matcher matcher, FetchEventCallback callback, int responseTimeoutMs) {
+        FutureResponse future = new FutureResponse();
+        try {
+            final FetchId id = peer.fetch(matcher, callback, future, responseTimeoutMs);
+            return completeFetch(id, future);
+        } catch (RuntimeException e) {
+            CompletableFuture<FetchId> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    /**
+     * Fetches the window {@code sort} selects from all states matching
+     * {@code matcher}.
+     *
+     * @return A future that completes with the id of the fetch when the
+     * daemon acknowledged the fetch.
+     * @see SortedFetch
+     */
+    public CompletableFuture<FetchId> fetch(Matcher matcher, FetchSort sort, FetchEventCallback callback, int responseTimeoutMs) {
+        FutureResponse future = new FutureResponse();
+        try {
+            final FetchId id = peer.fetch(matcher, sort, callback, future, responseTimeoutMs);
+            return completeFetch(id, future);
+        } catch (RuntimeException e) {
+            CompletableFuture<FetchId> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    private CompletableFuture<FetchId> completeFetch(final FetchId id, FutureResponse future) {
+        return future.handle((response, error) -> {
+            if (error != null) {
+                /*
+                 * The caller never gets the id of a failed fetch, so it can't
+                 * unfetch it on its own.
+                 */
+                try {
+                    peer.unfetch(id, null, 0);
+                } catch (RuntimeException e) {
+                    error.addSuppressed(e);
+                }
+                throw (error instanceof CompletionException) ? (CompletionException) error : new CompletionException(error);
+            }
+            return id;
+        });
+    }
+
+    public CompletableFuture<JsonObject> unfetch(FetchId id, int responseTimeoutMs) {
+        FutureResponse future = new FutureResponse();
+        try {
+            peer.unfetch(id, future, responseTimeoutMs);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public CompletableFuture<JsonObject> get(Matcher matcher, int responseTimeoutMs) {
+        FutureResponse future = new FutureResponse();
+        try {
+            peer.get(matcher, future, responseTimeoutMs);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public CompletableFuture<JsonObject> set(String path, JsonElement value, int responseTimeoutMs) {
+        FutureResponse future = new FutureResponse();
+        try {
+            peer.set(path, value, future, responseTimeoutMs);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Adds a state to jet.
+     *
+     * @return A future that completes with the handle of the state when the
+     * daemon acknowledged the state.
+     */
+    public CompletableFuture<StateHandle> addState(String path, JsonElement value, StateCallback stateCallback, int stateSetTimeoutMs, int responseTimeoutMs) {
+        return addState(path, value, null, null, stateCallback, stateSetTimeoutMs, responseTimeoutMs);
+    }
+
+    public CompletableFuture<StateHandle> addState(String path, JsonElement value, String[] setGroups, String[] fetchGroups, StateCallback stateCallback, int stateSetTimeoutMs, int responseTimeoutMs) {
+        FutureResponse future = new FutureResponse();
+        try {
+            final StateHandle handle = peer.addState(path, value, setGroups, fetchGroups, stateCallback, stateSetTimeoutMs, future, responseTimeoutMs);
+            return future.thenApply(response -> handle);
+        } catch (RuntimeException e) {
+            CompletableFuture<StateHandle> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    public CompletableFuture<StateHandle> addAsyncState(String path, JsonElement value, AsyncStateCallback stateCallback, int stateSetTimeoutMs, int responseTimeoutMs) {
+        FutureResponse future = new FutureResponse();
+        try {
+            final StateHandle handle = peer.addAsyncState(path, value, stateCallback, stateSetTimeoutMs, future, responseTimeoutMs);
+            return future.thenApply(response -> handle);
+        } catch (RuntimeException e) {
+            CompletableFuture<StateHandle> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    public CompletableFuture<JsonObject> removeState(String path, int responseTimeoutMs) {
+        FutureResponse future = new FutureResponse();
+        try {
+            peer.removeState(path, future, responseTimeoutMs);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Adds many states at once.
+     *
+     * @return A future that completes with the outcome of all {@code add}
+     * requests. Failures of single states don't complete it exceptionally,
+     * they are listed in the {@link BulkResult}.
+     * @see Peer#addStates(Collection, BulkCallback, int)
+     */
+    public CompletableFuture<BulkResult> addStates(Collection<StateDefinition> states, int responseTimeoutMs) {
+        FutureBulkResult future = new FutureBulkResult();
+        try {
+            peer.addStates(states, future, responseTimeoutMs);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public CompletableFuture<BulkResult> removeStates(Collection<String> paths, int responseTimeoutMs) {
+        FutureBulkResult future = new FutureBulkResult();
+        try {
+            peer.removeStates(paths, future, responseTimeoutMs);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public CompletableFuture<JsonObject> change(String path, JsonElement value, int responseTimeoutMs) {
+        FutureResponse future = new FutureResponse();
+        try {
+            peer.change(path, value, future, responseTimeoutMs);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public CompletableFuture<JsonObject> addMethod(String path, MethodCallback methodCallback, int methodCallTimeoutMs, int responseTimeoutMs) {
+        return addMethod(path, null, null, methodCallback, methodCallTimeoutMs, responseTimeoutMs);
+    }
+
+    public CompletableFuture<JsonObject> addMethod(String path, String[] callGroups, String[] fetchGroups, MethodCallback methodCallback, int methodCallTimeoutMs, int responseTimeoutMs) {
+        FutureResponse future = new FutureResponse();
+        try {
+            peer.addMethod(path, callGroups, fetchGroups, methodCallback, methodCallTimeoutMs, future, responseTimeoutMs);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public CompletableFuture<JsonObject> addAsyncMethod(String path, AsyncMethodCallback methodCallback, int methodCallTimeoutMs, int responseTimeoutMs) {
+        FutureResponse future = new FutureResponse();
+        try {
+            peer.addAsyncMethod(path, methodCallback, methodCallTimeoutMs, future, responseTimeoutMs);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public CompletableFuture<JsonObject> removeMethod(String path, int responseTimeoutMs) {
+        FutureResponse future = new FutureResponse();
+        try {
+            peer.removeMethod(path, future, responseTimeoutMs);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public CompletableFuture<BulkResult> addMethods(Collection<MethodDefinition> methods, int responseTimeoutMs) {
+        FutureBulkResult future = new FutureBulkResult();
+        try {
+            peer.addMethods(methods, future, responseTimeoutMs);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public CompletableFuture<BulkResult> removeMethods(Collection<String> paths, int responseTimeoutMs) {
+        FutureBulkResult future = new FutureBulkResult();
+        try {
+            peer.removeMethods(paths, future, responseTimeoutMs);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public CompletableFuture<JsonObject> call(String path, JsonElement arguments, int responseTimeoutMs) {
+        FutureResponse future = new FutureResponse();
+        try {
+            peer.call(path, arguments, future, responseTimeoutMs);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * A future that is its own response callback, so a request costs just
+     * one additional object.
+     */
+    static class FutureResponse extends CompletableFuture<JsonObject> implements ResponseCallback {
+
+        @Override
+        public void onResponse(boolean completed, JsonObject response) {
+            JsonElement error = response.get("error");
+            if (!completed || (error != null)) {
+                completeExceptionally(JsonRpcException.fromError(error));
+            } else {
+                complete(response);
+            }
+        }
+    }
+
+    private static class FutureBulkResult extends CompletableFuture<BulkResult> implements BulkCallback {
+
+        @Override
+        public void onCompleted(BulkResult result) {
+            complete(result);
+        }
+    }
+}
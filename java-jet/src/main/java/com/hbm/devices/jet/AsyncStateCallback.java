@@ -0,0 +1,48 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonElement;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A {@link StateCallback} that completes the {@code set} operation
+ * asynchronously.
+ */
+public interface AsyncStateCallback {
+    /**
+     * Callback method that will be called when a state is {@code set} via jet.
+     *
+     * The response is sent when the returned stage completes. If it does not
+     * complete within the {@code stateSetTimeoutMs} of the state, the
+     * {@code set} is answered with an error.
+     *
+     * @param path The key for the the state to be set.
+     * @param value The new value that should be {@code set}.
+     * @return A stage completing with the new state value after {@code set},
+     * or with {@code null} if the state was not changed. Completing
+     * exceptionally with a {@link JsonRpcException} sends that error.
+     */
+    public CompletionStage<JsonElement> onStateSet(String path, JsonElement value);
+}
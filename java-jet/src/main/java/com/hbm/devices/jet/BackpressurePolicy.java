@@ -0,0 +1,48 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+/**
+ * Determines what a {@link JetPeer} does with a request if the number of
+ * requests waiting for a response reached {@link PeerOptions#maxInFlightRequests}
+ * or the connection queued {@link PeerOptions#maxSendQueueBytes} for sending.
+ *
+ * Callers that don't want to block or to handle failures can wait for
+ * {@link Peer#whenWritable()} before sending.
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * Block the calling thread until there is capacity again, at most for
+     * the response timeout of the request. Never use this policy if requests
+     * are sent from callbacks running on the thread that receives responses.
+     */
+    BLOCK,
+
+    /**
+     * Throw a {@link java.util.concurrent.RejectedExecutionException}
+     * immediately.
+     */
+    FAIL
+}
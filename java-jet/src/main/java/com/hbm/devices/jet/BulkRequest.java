@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects the responses to the requests of a bulk operation and reports
+ * them as one {@link BulkResult}.
+ */
+class BulkRequest {
+
+    private static final Logger LOGGER = Logger.getLogger(JetConstants.LOGGER_NAME);
+
+    private final int count;
+    private final BulkCallback callback;
+    private final AtomicInteger pending;
+    private final Map<String, JsonRpcException> failures;
+    private JsonRpcException sendFailure;
+
+    BulkRequest(int count, BulkCallback callback) {
+        this.count = count;
+        this.callback = callback;
+        this.pending = new AtomicInteger(count);
+        this.failures = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return The response callback for the request concerning {@code path},
+     * {@code null} if nobody is interested in the result.
+     */
+    ResponseCallback createItem(final String path) {
+        if (callback == null) {
+            return null;
+        }
+
+        return new ResponseCallback() {
+            @Override
+            public void onResponse(boolean completed, JsonObject response) {
+                JsonElement error = (response != null) ? response.get("error") : null;
+                if (!completed || (error != null)) {
+                    fail(path, JsonRpcException.fromError(error));
+                } else {
+                    done();
+                }
+            }
+        };
+    }
+
+    /**
+     * Records a request that couldn't be sent.
+     */
+    void fail(String path, JsonRpcException e) {
+        if (callback != null) {
+            failures.put(path, e);
+            done();
+        }
+    }
+
+    /**
+     * Remembers why sending a request failed. Only used by the sending
+     * thread.
+     */
+    void sendFailed(JsonRpcException e) {
+        sendFailure = e;
+    }
+
+    /**
+     * @return The reason sending a request failed, {@code null} if all
+     * requests could be sent so far.
+     */
+    JsonRpcException getSendFailure() {
+        return sendFailure;
+    }
+
+    /**
+     * Reports an empty operation right away.
+     */
+    void completeIfEmpty() {
+        if ((count == 0) && (callback != null)) {
+            complete();
+        }
+    }
+
+    private void done() {
+        if (pending.decrementAndGet() == 0) {
+            complete();
+        }
+    }
+
+    private void complete() {
+        try {
+            callback.onCompleted(new BulkResult(count, failures));
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Exception in bulk callback", e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The aggregated outcome of a bulk operation like
+ * {@link Peer#addStates(java.util.Collection, BulkCallback, int)}.
+ */
+public class BulkResult {
+
+    private final int count;
+    private final Map<String, JsonRpcException> failures;
+
+    BulkResult(int count, Map<String, JsonRpcException> failures) {
+        this.count = count;
+        this.failures = Collections.unmodifiableMap(new TreeMap<>(failures));
+    }
+
+    /**
+     * @return The number of requests in the bulk operation.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public int getSucceeded() {
+        return count - failures.size();
+    }
+
+    /**
+     * @return {@code true} if all requests succeeded.
+     */
+    public boolean isSuccess() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * @return The paths of the failed requests with the error the daemon
+     * answered, sorted by path. A request that got no response in time failed
+     * with a {@link ResponseTimeoutException}.
+     */
+    public Map<String, JsonRpcException> getFailures() {
+        return failures;
+    }
+
+    @Override
+    public String toString() {
+        return getSucceeded() + " of " + count + " succeeded" + (failures.isEmpty() ? "" : ", failed: " + failures.keySet());
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A thread safe map from primitive {@code int} keys to objects.
+ *
+ * The map is split into independently locked segments, each one an open
+ * addressing hash table with linear probing. Keys are never boxed, so looking
+ * up request or fetch ids does not allocate. Operations on keys hashing to
+ * different segments don't contend with each other. {@code null} values are
+ * not supported.
+ *
+ * @param <V> The type of the values.
+ */
+class ConcurrentIntMap<V> {
+
+    private static final int MAX_SEGMENTS = 64;
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+    private final Segment<V>[] segments;
+    private final int segmentMask;
+
+    ConcurrentIntMap() {
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ConcurrentIntMap(int concurrencyLevel) {
+        int count = 1;
+        while ((count < concurrencyLevel) && (count < MAX_SEGMENTS)) {
+            count <<= 1;
+        }
+
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment<>();
+        }
+        this.segmentMask = count - 1;
+    }
+
+    V get(int key) {
+        final int hash = hash(key);
+        return segments[hash & segmentMask].get(key, hash);
+    }
+
+    boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    V put(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        final int hash = hash(key);
+        return segments[hash & segmentMask].put(key, hash, value);
+    }
+
+    V remove(int key) {
+        final int hash = hash(key);
+        return segments[hash & segmentMask].remove(key, hash);
+    }
+
+    /**
+     * Removes the entry for {@code key} only if it is currently mapped to
+     * {@code value}.
+     *
+     * @return {@code true} if the entry was removed.
+     */
+    boolean remove(int key, V value) {
+        final int hash = hash(key);
+        return segments[hash & segmentMask].remove(key, hash, value);
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return A snapshot of all values currently in the map.
+     */
+    List<V> values() {
+        final List<V> values = new ArrayList<>();
+        for (Segment<V> segment : segments) {
+            segment.copyValues(values);
+        }
+        return values;
+    }
+
+    private static int hash(int key) {
+        final int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Segment<V> {
+
+        private int[] keys;
+        private Object[] values;
+        private int size;
+
+        private Segment() {
+            this.keys = new int[INITIAL_SEGMENT_CAPACITY];
+            this.values = new Object[INITIAL_SEGMENT_CAPACITY];
+        }
+
+        /*
+         * The low bits of the hash select the segment, so the slot index is
+         * taken from the high bits.
+         */
+        private static int slot(int hash, int mask) {
+            return Integer.rotateRight(hash, 16) & mask;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V get(int key, int hash) {
+            final int mask = keys.length - 1;
+            for (int i = slot(hash, mask); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return (V) values[i];
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V put(int key, int hash, V value) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                resize();
+            }
+
+            final int mask = keys.length - 1;
+            int i = slot(hash, mask);
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    V old = (V) values[i];
+                    values[i] = value;
+                    return old;
+                }
+                i = (i + 1) & mask;
+            }
+
+            keys[i] = key;
+            values[i] = value;
+            size++;
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V remove(int key, int hash) {
+            final int i = indexOf(key, hash);
+            if (i < 0) {
+                return null;
+            }
+            V old = (V) values[i];
+            delete(i);
+            return old;
+        }
+
+        synchronized boolean remove(int key, int hash, V value) {
+            final int i = indexOf(key, hash);
+            if ((i < 0) || (values[i] != value)) {
+                return false;
+            }
+            delete(i);
+            return true;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized void copyValues(List<V> target) {
+            for (Object value : values) {
+                if (value != null) {
+                    target.add((V) value);
+                }
+            }
+        }
+
+        private int indexOf(int key, int hash) {
+            final int mask = keys.length - 1;
+            for (int i = slot(hash, mask); values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /*
+         * Backward shift deletion: entries following the removed slot are
+         * moved up if their probe sequence passes the free slot, so no
+         * tombstones are needed.
+         */
+        private void delete(int index) {
+            final int mask = keys.length - 1;
+            int free = index;
+            values[free] = null;
+            size--;
+
+            int i = free;
+            while (true) {
+                i = (i + 1) & mask;
+                if (values[i] == null) {
+                    return;
+                }
+
+                final int home = slot(hash(keys[i]), mask);
+                final boolean movable = (free <= i) ? ((home <= free) || (home > i)) : ((home <= free) && (home > i));
+                if (movable) {
+                    keys[free] = keys[i];
+                    values[free] = values[i];
+                    values[i] = null;
+                    free = i;
+                }
+            }
+        }
+
+        private void resize() {
+            final int[] oldKeys = keys;
+            final Object[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new Object[oldValues.length * 2];
+
+            final int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldValues[j] != null) {
+                    int i = slot(hash(oldKeys[j]), mask);
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+    }
+}
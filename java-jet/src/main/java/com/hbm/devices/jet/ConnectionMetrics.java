@@ -0,0 +1,74 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Traffic counters of a {@link JetConnection}.
+ *
+ * A frame is a single frame or message of the transport, which might carry a
+ * JSON-RPC batch. Bytes are counted as encoded on the wire without transport headers,
+ * connections that pass strings without encoding them count characters.
+ */
+public final class ConnectionMetrics {
+
+    private final LongAdder framesSent;
+    private final LongAdder bytesSent;
+    private final LongAdder framesReceived;
+    private final LongAdder bytesReceived;
+
+    ConnectionMetrics() {
+        this.framesSent = new LongAdder();
+        this.bytesSent = new LongAdder();
+        this.framesReceived = new LongAdder();
+        this.bytesReceived = new LongAdder();
+    }
+
+    public long getFramesSent() {
+        return framesSent.sum();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getFramesReceived() {
+        return framesReceived.sum();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    void sent(int bytes) {
+        framesSent.increment();
+        bytesSent.add(bytes);
+    }
+
+    void received(int bytes) {
+        framesReceived.increment();
+        bytesReceived.add(bytes);
+    }
+}
@@ -0,0 +1,644 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A minimal Jet daemon running inside the current process.
+ *
+ * Peers talk to it through {@link LoopbackJetConnection}s, so several
+ * {@link JetPeer}s can exchange states, methods and fetch notifications
+ * without any socket involved. This is meant for tests, load tests and
+ * profiling the library, not as a replacement for a real daemon: it supports
+ * {@code add}, {@code remove}, {@code change}, {@code set}, {@code call},
+ * {@code fetch} including sorted fetches and value matchers, {@code unfetch}
+ * and {@code get}, accepts every {@code config}, {@code authenticate} and
+ * {@code passwd} request and ignores access groups. {@code set} and
+ * {@code call} requests are forwarded to the owning peer without a timeout
+ * of their own, the requesting peer's response timeout applies.
+ *
+ * All requests are processed under a single lock on the calling thread.
+ */
+public class EmbeddedJetDaemon implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(JetConstants.LOGGER_NAME);
+
+    private final Gson gson;
+    private final JsonParser parser;
+    private final Set<LoopbackJetConnection> connections;
+    private final Map<String, Element> elements;
+    private final List<Fetcher> fetchers;
+    private final MatcherIndex<Fetcher> fetcherIndex;
+    private final Map<Integer, ForwardedRequest> forwardedRequests;
+
+    private int nextRequestId;
+    private boolean closed;
+
+    public EmbeddedJetDaemon() {
+        this.gson = new GsonBuilder().create();
+        this.parser = new JsonParser();
+        this.connections = new HashSet<>();
+        this.elements = new LinkedHashMap<>();
+        this.fetchers = new ArrayList<>();
+        this.fetcherIndex = new MatcherIndex<>();
+        this.forwardedRequests = new HashMap<>();
+    }
+
+    /**
+     * Disconnects all peers. They see this as a lost connection.
+     */
+    @Override
+    public void close() {
+        List<LoopbackJetConnection> attached;
+        synchronized (this) {
+            closed = true;
+            attached = new ArrayList<>(connections);
+        }
+
+        for (LoopbackJetConnection connection : attached) {
+            connection.close();
+            detach(connection);
+        }
+    }
+
+    synchronized boolean attach(LoopbackJetConnection connection) {
+        if (closed) {
+            return false;
+        }
+        connections.add(connection);
+        return true;
+    }
+
+    synchronized void detach(LoopbackJetConnection connection) {
+        if (!connections.remove(connection)) {
+            return;
+        }
+
+        Iterator<Fetcher> fetcherIterator = fetchers.iterator();
+        while (fetcherIterator.hasNext()) {
+            Fetcher fetcher = fetcherIterator.next();
+            if (fetcher.connection == connection) {
+                fetcherIterator.remove();
+                fetcherIndex.remove(fetcher);
+            }
+        }
+
+        Iterator<Element> elementIterator = elements.values().iterator();
+        while (elementIterator.hasNext()) {
+            Element element = elementIterator.next();
+            if (element.owner == connection) {
+                elementIterator.remove();
+                notifyFetchers(FetchEvent.REMOVE, element);
+            }
+        }
+
+        Iterator<ForwardedRequest> requestIterator = forwardedRequests.values().iterator();
+        while (requestIterator.hasNext()) {
+            ForwardedRequest request = requestIterator.next();
+            if (request.target == connection) {
+                requestIterator.remove();
+                sendError(request.origin, request.originId, JsonRpcException.INTERNAL_ERROR, "peer disconnected");
+            } else if (request.origin == connection) {
+                requestIterator.remove();
+            }
+        }
+    }
+
+    synchronized void receive(LoopbackJetConnection from, String message) {
+        if (!connections.contains(from)) {
+            return;
+        }
+
+        JsonElement json;
+        try {
+            json = parser.parse(message);
+        } catch (JsonParseException e) {
+            LOGGER.log(Level.SEVERE, "Embedded daemon can't parse JSON!", e);
+            sendError(from, null, JsonRpcException.PARSE_ERROR, "parse error");
+            return;
+        }
+
+        if (json.isJsonArray()) {
+            for (JsonElement element : json.getAsJsonArray()) {
+                handleMessage(from, element);
+            }
+        } else {
+            handleMessage(from, json);
+        }
+    }
+
+    private void handleMessage(LoopbackJetConnection from, JsonElement message) {
+        if (!message.isJsonObject()) {
+            sendError(from, null, JsonRpcException.INVALID_REQUEST, "message is not an object");
+            return;
+        }
+
+        JsonObject object = message.getAsJsonObject();
+        JsonElement id = object.get("id");
+        JsonElement method = object.get("method");
+        if (method == null) {
+            handleResponse(object, id);
+            return;
+        }
+
+        JsonElement params = object.get("params");
+        try {
+            if (!method.isJsonPrimitive()) {
+                throw new JsonRpcException(JsonRpcException.INVALID_REQUEST, "method is not a string");
+            }
+            handleRequest(from, id, method.getAsString(), params);
+        } catch (JsonRpcException e) {
+            sendError(from, id, e.getCode(), e.getMessage());
+        }
+    }
+
+    private void handleRequest(LoopbackJetConnection from, JsonElement id, String method, JsonElement params) throws JsonRpcException {
+        switch (method) {
+            case JetMethod.CONFIG:
+            case JetMethod.AUTHENTICATE:
+            case JetMethod.PASSWD:
+                sendResult(from, id, true);
+                break;
+            case JetMethod.INFO:
+                sendInfo(from, id);
+                break;
+            case JetMethod.ADD:
+                add(from, id, getParams(params));
+                break;
+            case JetMethod.REMOVE:
+                remove(from, id, getParams(params));
+                break;
+            case JetMethod.CHANGE:
+                change(from, id, getParams(params));
+                break;
+            case JetMethod.SET:
+                set(from, id, getParams(params));
+                break;
+            case JetMethod.CALL:
+                call(from, id, getParams(params));
+                break;
+            case JetMethod.FETCH:
+                fetch(from, id, getParams(params));
+                break;
+            case JetMethod.UNFETCH:
+                unfetch(from, id, getParams(params));
+                break;
+            case JetMethod.GET:
+                get(from, id, getParams(params));
+                break;
+            default:
+                throw new JsonRpcException(JsonRpcException.METHOD_NOT_FOUND, "method not found");
+        }
+    }
+
+    private void add(LoopbackJetConnection from, JsonElement id, JsonObject params) throws JsonRpcException {
+        String path = getPath(params);
+        if (elements.containsKey(path)) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "path already exists");
+        }
+
+        JsonElement value = params.get("value");
+        JsonElement fetchOnly = params.get("fetchOnly");
+        Element element = new Element(path, from, value, (fetchOnly != null) && fetchOnly.getAsBoolean());
+        elements.put(path, element);
+        sendResult(from, id, true);
+        notifyFetchers(FetchEvent.ADD, element);
+    }
+
+    private void remove(LoopbackJetConnection from, JsonElement id, JsonObject params) throws JsonRpcException {
+        Element element = getOwnElement(from, params);
+        elements.remove(element.path);
+        sendResult(from, id, true);
+        notifyFetchers(FetchEvent.REMOVE, element);
+    }
+
+    private void change(LoopbackJetConnection from, JsonElement id, JsonObject params) throws JsonRpcException {
+        Element element = getOwnElement(from, params);
+        if (element.isMethod()) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "can't change a method");
+        }
+
+        JsonElement value = params.get("value");
+        if (value == null) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "no value in parameter");
+        }
+
+        element.value = value;
+        sendResult(from, id, true);
+        notifyFetchers(FetchEvent.CHANGE, element);
+    }
+
+    private void set(LoopbackJetConnection from, JsonElement id, JsonObject params) throws JsonRpcException {
+        Element element = getElement(params);
+        if (element.isMethod()) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "can't set a method");
+        }
+        if (element.fetchOnly) {
+            throw new JsonRpcException(JsonRpcException.INVALID_REQUEST, "state is readonly");
+        }
+
+        JsonElement value = params.get("value");
+        if (value == null) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "no value in parameter");
+        }
+
+        JsonObject forwardedParams = new JsonObject();
+        forwardedParams.add("value", value);
+        forward(from, id, element, forwardedParams);
+    }
+
+    private void call(LoopbackJetConnection from, JsonElement id, JsonObject params) throws JsonRpcException {
+        Element element = getElement(params);
+        if (!element.isMethod()) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "can't call a state");
+        }
+
+        JsonElement args = params.get("args");
+        forward(from, id, element, args != null ? args : new JsonArray());
+    }
+
+    private void fetch(LoopbackJetConnection from, JsonElement id, JsonObject params) throws JsonRpcException {
+        JsonElement fetchId = params.get("id");
+        if (fetchId == null) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "no fetch id");
+        }
+
+        JsonElement sort = params.get("sort");
+        SortedWindow window = ((sort != null) && sort.isJsonObject()) ? new SortedWindow(sort.getAsJsonObject()) : null;
+
+        Matcher matcher = createMatcher(params);
+        Fetcher fetcher = new Fetcher(from, fetchId, new PathMatcher(matcher), new ValueFilter(matcher), window);
+        fetchers.add(fetcher);
+        fetcherIndex.add(fetcher.matcher, fetcher);
+        sendResult(from, id, true);
+
+        for (Element element : elements.values()) {
+            if (!fetcher.matcher.matches(element.path)) {
+                continue;
+            }
+
+            if (window != null) {
+                if (fetcher.filter.filter(FetchEvent.ADD, element.path, element.value) != null) {
+                    window.update(element.path, element.value);
+                }
+            } else {
+                notify(fetcher, FetchEvent.ADD, element);
+            }
+        }
+        if (window != null) {
+            sendWindowChanges(fetcher);
+        }
+    }
+
+    private void unfetch(LoopbackJetConnection from, JsonElement id, JsonObject params) throws JsonRpcException {
+        JsonElement fetchId = params.get("id");
+        if (fetchId == null) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "no fetch id");
+        }
+
+        Iterator<Fetcher> iterator = fetchers.iterator();
+        while (iterator.hasNext()) {
+            Fetcher fetcher = iterator.next();
+            if ((fetcher.connection == from) && fetcher.id.equals(fetchId)) {
+                iterator.remove();
+                fetcherIndex.remove(fetcher);
+            }
+        }
+        sendResult(from, id, true);
+    }
+
+    private void get(LoopbackJetConnection from, JsonElement id, JsonObject params) {
+        Matcher matcher = createMatcher(params);
+        PathMatcher pathMatcher = new PathMatcher(matcher);
+        ValueFilter valueFilter = new ValueFilter(matcher);
+
+        JsonArray result = new JsonArray();
+        for (Element element : elements.values()) {
+            if (pathMatcher.matches(element.path) && valueFilter.matches(element.value)) {
+                JsonObject entry = new JsonObject();
+                entry.addProperty("path", element.path);
+                if (!element.isMethod()) {
+                    entry.add("value", element.value);
+                }
+                result.add(entry);
+            }
+        }
+
+        if (id != null) {
+            JsonObject response = createResponse(id);
+            response.add("result", result);
+            from.deliver(gson.toJson(response));
+        }
+    }
+
+    private void forward(LoopbackJetConnection from, JsonElement id, Element element, JsonElement params) {
+        int forwardedId = ++nextRequestId;
+        forwardedRequests.put(forwardedId, new ForwardedRequest(from, id, element.owner));
+
+        JsonObject request = new JsonObject();
+        request.addProperty("jsonrpc", "2.0");
+        request.addProperty("id", forwardedId);
+        request.addProperty("method", element.path);
+        request.add("params", params);
+        element.owner.deliver(gson.toJson(request));
+    }
+
+    private void handleResponse(JsonObject response, JsonElement id) {
+        if ((id == null) || !id.isJsonPrimitive() || !id.getAsJsonPrimitive().isNumber()) {
+            return;
+        }
+
+        ForwardedRequest request = forwardedRequests.remove(id.getAsInt());
+        if ((request == null) || (request.originId == null)) {
+            return;
+        }
+
+        JsonObject forwarded = createResponse(request.originId);
+        JsonElement result = response.get("result");
+        if (result != null) {
+            forwarded.add("result", result);
+        } else {
+            JsonElement error = response.get("error");
+            forwarded.add("error", error != null ? error : new JsonRpcException(JsonRpcException.INTERNAL_ERROR, "invalid response").getJson());
+        }
+        request.origin.deliver(gson.toJson(forwarded));
+    }
+
+    private void notifyFetchers(String event, Element element) {
+        if (fetcherIndex.isEmpty()) {
+            return;
+        }
+
+        List<Fetcher> matching = new ArrayList<>();
+        fetcherIndex.match(element.path, matching);
+        for (Fetcher fetcher : matching) {
+            notify(fetcher, event, element);
+        }
+    }
+
+    private void notify(Fetcher fetcher, String event, Element element) {
+        String filteredEvent = fetcher.filter.filter(event, element.path, element.value);
+        if (filteredEvent == null) {
+            return;
+        }
+
+        if (fetcher.window != null) {
+            fetcher.window.update(element.path, FetchEvent.REMOVE.equals(filteredEvent) ? null : element.value);
+            sendWindowChanges(fetcher);
+            return;
+        }
+
+        JsonObject params = new JsonObject();
+        params.addProperty("event", filteredEvent);
+        params.addProperty("path", element.path);
+        if (!element.isMethod()) {
+            params.add("value", element.value);
+        }
+
+        JsonObject notification = new JsonObject();
+        notification.addProperty("jsonrpc", "2.0");
+        notification.add("method", fetcher.id);
+        notification.add("params", params);
+        fetcher.connection.deliver(gson.toJson(notification));
+    }
+
+    private void sendWindowChanges(Fetcher fetcher) {
+        JsonObject params = fetcher.window.collectChanges();
+        if (params == null) {
+            return;
+        }
+
+        JsonObject notification = new JsonObject();
+        notification.addProperty("jsonrpc", "2.0");
+        notification.add("method", fetcher.id);
+        notification.add("params", params);
+        fetcher.connection.deliver(gson.toJson(notification));
+    }
+
+    private void sendInfo(LoopbackJetConnection from, JsonElement id) {
+        if (id == null) {
+            return;
+        }
+
+        JsonObject features = new JsonObject();
+        features.addProperty("batches", true);
+        features.addProperty("fetch", "full");
+
+        JsonObject info = new JsonObject();
+        info.addProperty("name", "embedded");
+        info.addProperty("protocolVersion", "1.1.0");
+        info.add("features", features);
+
+        JsonObject response = createResponse(id);
+        response.add("result", info);
+        from.deliver(gson.toJson(response));
+    }
+
+    private void sendResult(LoopbackJetConnection to, JsonElement id, boolean result) {
+        if (id == null) {
+            return;
+        }
+
+        JsonObject response = createResponse(id);
+        response.addProperty("result", result);
+        to.deliver(gson.toJson(response));
+    }
+
+    private void sendError(LoopbackJetConnection to, JsonElement id, int code, String message) {
+        JsonObject response = createResponse(id);
+        response.add("error", new JsonRpcException(code, message).getJson());
+        to.deliver(gson.toJson(response));
+    }
+
+    private static JsonObject createResponse(JsonElement id) {
+        JsonObject response = new JsonObject();
+        response.addProperty("jsonrpc", "2.0");
+        response.add("id", id);
+        return response;
+    }
+
+    private static JsonObject getParams(JsonElement params) throws JsonRpcException {
+        if ((params == null) || !params.isJsonObject()) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "no parameters in json");
+        }
+        return params.getAsJsonObject();
+    }
+
+    private static String getPath(JsonObject params) throws JsonRpcException {
+        JsonElement path = params.get("path");
+        if ((path == null) || !path.isJsonPrimitive() || path.getAsString().isEmpty()) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "no path in parameter");
+        }
+        return path.getAsString();
+    }
+
+    private static Matcher createMatcher(JsonObject params) {
+        Matcher matcher = new Matcher();
+        JsonElement caseInsensitive = params.get("caseInsensitive");
+        matcher.caseInsensitive = (caseInsensitive != null) && caseInsensitive.getAsBoolean();
+
+        JsonElement pathElement = params.get("path");
+        if ((pathElement != null) && pathElement.isJsonObject()) {
+            JsonObject path = pathElement.getAsJsonObject();
+            matcher.equals = getString(path, "equals");
+            matcher.equalsNot = getString(path, "equalsNot");
+            matcher.startsWith = getString(path, "startsWith");
+            matcher.endsWith = getString(path, "endsWith");
+            matcher.contains = getString(path, "contains");
+
+            JsonElement all = path.get("containsAllOf");
+            if ((all != null) && all.isJsonArray()) {
+                JsonArray array = all.getAsJsonArray();
+                matcher.containsAllOf = new String[array.size()];
+                for (int i = 0; i < array.size(); i++) {
+                    matcher.containsAllOf[i] = array.get(i).getAsString();
+                }
+            }
+        }
+
+        JsonElement value = params.get("value");
+        if ((value != null) && value.isJsonObject()) {
+            matcher.value = createValueMatcher(value.getAsJsonObject());
+        }
+
+        JsonElement valueField = params.get("valueField");
+        if ((valueField != null) && valueField.isJsonObject()) {
+            matcher.valueField = new HashMap<>();
+            for (Map.Entry<String, JsonElement> entry : valueField.getAsJsonObject().entrySet()) {
+                if (entry.getValue().isJsonObject()) {
+                    matcher.valueField.put(entry.getKey(), createValueMatcher(entry.getValue().getAsJsonObject()));
+                }
+            }
+        }
+        return matcher;
+    }
+
+    private static ValueMatcher createValueMatcher(JsonObject object) {
+        ValueMatcher matcher = new ValueMatcher();
+        matcher.equals = object.get("equals");
+        matcher.equalsNot = object.get("equalsNot");
+        matcher.isType = getString(object, "isType");
+
+        JsonElement lessThan = object.get("lessThan");
+        if ((lessThan != null) && lessThan.isJsonPrimitive()) {
+            matcher.lessThan = lessThan.getAsDouble();
+        }
+        JsonElement greaterThan = object.get("greaterThan");
+        if ((greaterThan != null) && greaterThan.isJsonPrimitive()) {
+            matcher.greaterThan = greaterThan.getAsDouble();
+        }
+        return matcher;
+    }
+
+    private static String getString(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        if ((element == null) || !element.isJsonPrimitive()) {
+            return null;
+        }
+        return element.getAsString();
+    }
+
+    private Element getElement(JsonObject params) throws JsonRpcException {
+        Element element = elements.get(getPath(params));
+        if (element == null) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "path not found");
+        }
+        return element;
+    }
+
+    private Element getOwnElement(LoopbackJetConnection from, JsonObject params) throws JsonRpcException {
+        Element element = getElement(params);
+        if (element.owner != from) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "path not owned by peer");
+        }
+        return element;
+    }
+
+    private static class Element {
+
+        final String path;
+        final LoopbackJetConnection owner;
+        final boolean fetchOnly;
+        JsonElement value;
+
+        Element(String path, LoopbackJetConnection owner, JsonElement value, boolean fetchOnly) {
+            this.path = path;
+            this.owner = owner;
+            this.value = value;
+            this.fetchOnly = fetchOnly;
+        }
+
+        boolean isMethod() {
+            return value == null;
+        }
+    }
+
+    private static class ForwardedRequest {
+
+        final LoopbackJetConnection origin;
+        final JsonElement originId;
+        final LoopbackJetConnection target;
+
+        ForwardedRequest(LoopbackJetConnection origin, JsonElement originId, LoopbackJetConnection target) {
+            this.origin = origin;
+            this.originId = originId;
+            this.target = target;
+        }
+    }
+
+    private static class Fetcher {
+
+        final LoopbackJetConnection connection;
+        final JsonElement id;
+        final PathMatcher matcher;
+        final ValueFilter filter;
+        final SortedWindow window;
+
+        Fetcher(LoopbackJetConnection connection, JsonElement id, PathMatcher matcher, ValueFilter filter, SortedWindow window) {
+            this.connection = connection;
+            this.id = id;
+            this.matcher = matcher;
+            this.filter = filter;
+            this.window = window;
+        }
+    }
+}
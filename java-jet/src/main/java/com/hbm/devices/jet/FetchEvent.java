@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * A single fetch notification as sent by the daemon.
+ */
+public class FetchEvent {
+
+    public static final String ADD = "add";
+    public static final String CHANGE = "change";
+    public static final String REMOVE = "remove";
+
+    private final String event;
+    private final String path;
+    private final JsonElement value;
+    private final JsonObject params;
+
+    FetchEvent(JsonObject params) {
+        this.params = params;
+        this.event = getString(params, "event");
+        this.path = getString(params, "path");
+        this.value = params.get("value");
+    }
+
+    /**
+     * @return The kind of the event, usually one of {@link #ADD},
+     * {@link #CHANGE} or {@link #REMOVE}.
+     */
+    public String getEvent() {
+        return event;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return The value of the state, {@code null} for methods.
+     */
+    public JsonElement getValue() {
+        return value;
+    }
+
+    /**
+     * @return The complete parameters of the fetch notification.
+     */
+    public JsonObject getParams() {
+        return params;
+    }
+
+    @Override
+    public String toString() {
+        return params.toString();
+    }
+
+    private static String getString(JsonObject object, String member) {
+        JsonElement element = object.get(member);
+        if ((element != null) && element.isJsonPrimitive()) {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isString()) {
+                return primitive.getAsString();
+            }
+        }
+        return null;
+    }
+}
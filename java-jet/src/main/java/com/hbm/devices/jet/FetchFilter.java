@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Applies the path and value predicates of a {@link Matcher} to fetch
+ * notifications in the peer, before they reach another callback.
+ *
+ * Use it with daemons that don't evaluate value predicates, or to narrow a
+ * broad fetch for one consumer. Like a daemon, the filter delivers an
+ * {@code add} when a value starts matching and a {@code remove} when it
+ * stops matching. Notifications of sorted fetches are passed unchanged.
+ *
+ * The filter expects the notifications of a single fetch in order, as
+ * delivered by the peer.
+ */
+public class FetchFilter implements FetchEventCallback {
+
+    private final PathMatcher pathMatcher;
+    private final ValueFilter valueFilter;
+    private final FetchEventCallback callback;
+
+    public FetchFilter(Matcher matcher, FetchEventCallback callback) {
+        if (callback == null) {
+            throw new NullPointerException("callback");
+        }
+        this.pathMatcher = new PathMatcher(matcher);
+        this.valueFilter = new ValueFilter(matcher);
+        this.callback = callback;
+    }
+
+    /**
+     * @param path The path of a state or method.
+     * @param value The value of a state, {@code null} for methods.
+     * @return {@code true} if the matcher selects {@code path} with
+     * {@code value}.
+     */
+    public boolean matches(String path, JsonElement value) {
+        return pathMatcher.matches(path) && valueFilter.matches(value);
+    }
+
+    @Override
+    public void onFetchEvent(JsonObject params) {
+        JsonObject filtered = filter(pathMatcher, valueFilter, params);
+        if (filtered != null) {
+            callback.onFetchEvent(filtered);
+        }
+    }
+
+    /**
+     * @return The notification as seen through the filters, {@code null} if
+     * it is filtered out.
+     */
+    static JsonObject filter(PathMatcher pathMatcher, ValueFilter valueFilter, JsonObject params) {
+        JsonElement path = params.get("path");
+        JsonElement event = params.get("event");
+        if ((path == null) || !path.isJsonPrimitive() || (event == null) || !event.isJsonPrimitive()) {
+            return params;
+        }
+
+        if ((pathMatcher != null) && !pathMatcher.matches(path.getAsString())) {
+            return null;
+        }
+
+        String filteredEvent = valueFilter.filter(event.getAsString(), path.getAsString(), params.get("value"));
+        if (filteredEvent == null) {
+            return null;
+        }
+        if (filteredEvent.equals(event.getAsString())) {
+            return params;
+        }
+
+        JsonObject translated = params.deepCopy();
+        translated.addProperty("event", filteredEvent);
+        return translated;
+    }
+}
@@ -0,0 +1,478 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shares daemon fetches between many local subscribers of a {@link Peer}.
+ *
+ * Subscribers with identical matchers share one fetch. A subscriber whose
+ * matcher is covered by the matcher of an active fetch is served from that
+ * fetch, its events are filtered locally. This includes value predicates, if
+ * the active fetch has none. The daemon fetch is cancelled when its last
+ * subscriber unfetches.
+ *
+ * Each shared fetch keeps the last notification of every path it currently
+ * matches. A subscriber joining an active fetch first gets an {@code add}
+ * event for each matching path, just as if the daemon had started a new
+ * fetch. If the peer loses its connection, subscribers get a {@code remove}
+ * for every path they know.
+ */
+public class FetchMultiplexer {
+
+    private static final Logger LOGGER = Logger.getLogger(JetConstants.LOGGER_NAME);
+
+    private final Peer peer;
+    private final Map<String, SharedFetch> fetchesByKey;
+    private final Map<FetchId, Subscription> subscriptions;
+
+    public FetchMultiplexer(Peer peer) {
+        this.peer = peer;
+        this.fetchesByKey = new LinkedHashMap<>();
+        this.subscriptions = new HashMap<>();
+    }
+
+    /**
+     * Subscribes to all paths matched by {@code matcher}.
+     *
+     * @param matcher Selects the paths to fetch.
+     * @param callback Receives the fetch notifications.
+     * @param responseCallback Called when the fetch is established or
+     * failed. If the fetch is served by an active daemon fetch, it is called
+     * with the response of that fetch.
+     * @param responseTimeoutMs The timeout in milliseconds how long a new
+     * daemon fetch might take before failing.
+     * @return The id of the subscription, only valid for
+     * {@link #unfetch(FetchId, ResponseCallback, int)} of this multiplexer.
+     */
+    public FetchId fetch(Matcher matcher, FetchEventCallback callback, ResponseCallback responseCallback, int responseTimeoutMs) {
+        if (callback == null) {
+            throw new NullPointerException("callback");
+        }
+
+        final PathMatcher pathMatcher = new PathMatcher(matcher);
+        final ValueFilter valueFilter = new ValueFilter(matcher);
+        final String key = pathMatcher.getKey() + '\u0000' + valueFilter.getKey();
+        final FetchId id = new FetchId();
+        final SharedFetch shared;
+        final Subscription subscription;
+        final boolean created;
+
+        synchronized (this) {
+            SharedFetch existing = fetchesByKey.get(key);
+            if (existing == null) {
+                existing = findCovering(pathMatcher);
+            }
+
+            created = (existing == null);
+            shared = created ? new SharedFetch(key, pathMatcher, valueFilter) : existing;
+            if (created) {
+                fetchesByKey.put(key, shared);
+            }
+            shared.references++;
+            subscription = new Subscription(pathMatcher, valueFilter, callback, shared);
+            subscriptions.put(id, subscription);
+        }
+
+        shared.join(subscription, responseCallback);
+        if (created) {
+            final FetchId daemonId;
+            try {
+                daemonId = peer.fetch(matcher, shared, shared, responseTimeoutMs);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    subscriptions.remove(id);
+                    fetchesByKey.remove(key, shared);
+                    /*
+                     * Subscribers that joined in the meantime keep their ids,
+                     * unfetching them just succeeds.
+                     */
+                    shared.references = 0;
+                }
+                shared.abort(responseCallback, createError(e));
+                throw e;
+            }
+
+            final boolean orphaned;
+            synchronized (this) {
+                shared.daemonId = daemonId;
+                orphaned = (shared.references == 0);
+            }
+            if (orphaned) {
+                /*
+                 * All subscribers left before the daemon fetch was known,
+                 * their unfetch couldn't cancel it.
+                 */
+                peer.unfetch(daemonId, null, 0);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Cancels a subscription. The daemon fetch is only cancelled if this was
+     * its last subscriber, otherwise {@code responseCallback} is called
+     * immediately.
+     */
+    public void unfetch(FetchId id, ResponseCallback responseCallback, int responseTimeoutMs) {
+        final Subscription subscription;
+        final FetchId daemonId;
+        synchronized (this) {
+            subscription = subscriptions.remove(id);
+            if (subscription == null) {
+                throw new IllegalArgumentException("unknown fetch id " + id);
+            }
+
+            SharedFetch shared = subscription.shared;
+            if ((shared.references > 0) && (--shared.references == 0)) {
+                fetchesByKey.remove(shared.key, shared);
+                daemonId = shared.daemonId;
+            } else {
+                daemonId = null;
+            }
+        }
+
+        subscription.shared.leave(subscription);
+        if (daemonId != null) {
+            peer.unfetch(daemonId, responseCallback, responseTimeoutMs);
+        } else if (responseCallback != null) {
+            responseCallback.onResponse(true, createSuccess());
+        }
+    }
+
+    /**
+     * @return The number of fetches currently active at the daemon.
+     */
+    public synchronized int getDaemonFetchCount() {
+        return fetchesByKey.size();
+    }
+
+    private SharedFetch findCovering(PathMatcher matcher) {
+        for (SharedFetch shared : fetchesByKey.values()) {
+            if (shared.valueFilter.isEmpty() && shared.matcher.covers(matcher)) {
+                return shared;
+            }
+        }
+        return null;
+    }
+
+    private static JsonObject createSuccess() {
+        JsonObject response = new JsonObject();
+        response.addProperty("jsonrpc", "2.0");
+        response.addProperty("result", true);
+        return response;
+    }
+
+    private static JsonObject createError(RuntimeException e) {
+        JsonObject response = new JsonObject();
+        response.addProperty("jsonrpc", "2.0");
+        response.add("error", new JsonRpcException(JsonRpcException.INTERNAL_ERROR, String.valueOf(e.getMessage())).getJson());
+        return response;
+    }
+
+    private static class Subscription {
+
+        final PathMatcher matcher;
+        final ValueFilter valueFilter;
+        final FetchEventCallback callback;
+        final SharedFetch shared;
+        final boolean filtered;
+        volatile boolean active;
+
+        Subscription(PathMatcher matcher, ValueFilter valueFilter, FetchEventCallback callback, SharedFetch shared) {
+            this.matcher = matcher;
+            this.valueFilter = valueFilter.getKey().equals(shared.valueFilter.getKey()) ? null : valueFilter;
+            this.callback = callback;
+            this.shared = shared;
+            this.filtered = !matcher.getKey().equals(shared.matcher.getKey());
+            this.active = true;
+        }
+
+        void deliver(JsonObject params) {
+            if (!active) {
+                return;
+            }
+
+            if (valueFilter != null) {
+                params = FetchFilter.filter(null, valueFilter, params);
+                if (params == null) {
+                    return;
+                }
+            }
+
+            try {
+                callback.onFetchEvent(params);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Exception in fetch callback", e);
+            }
+        }
+    }
+
+    /**
+     * A single daemon fetch and its local subscribers.
+     *
+     * Notifications and responses are queued while holding the lock and
+     * delivered after releasing it, one at a time and in queue order, by
+     * whichever thread finds the queue idle. So callbacks never run under the
+     * lock and might subscribe or unsubscribe themselves.
+     */
+    private class SharedFetch implements ResettableFetchCallback, ResponseCallback {
+
+        final String key;
+        final PathMatcher matcher;
+        final ValueFilter valueFilter;
+        volatile FetchId daemonId;
+        int references;
+
+        private final List<Subscription> unfiltered;
+        private MatcherIndex<Subscription> filtered;
+        private final Map<String, JsonObject> lastEvents;
+        private final List<ResponseCallback> waitingCallbacks;
+        private final ArrayDeque<Runnable> deliveries;
+        private boolean delivering;
+        private boolean responded;
+        private boolean completed;
+        private JsonObject response;
+
+        SharedFetch(String key, PathMatcher matcher, ValueFilter valueFilter) {
+            this.key = key;
+            this.matcher = matcher;
+            this.valueFilter = valueFilter;
+            this.unfiltered = new ArrayList<>();
+            this.filtered = new MatcherIndex<>();
+            this.lastEvents = new LinkedHashMap<>();
+            this.waitingCallbacks = new ArrayList<>();
+            this.deliveries = new ArrayDeque<>();
+        }
+
+        void join(final Subscription subscription, ResponseCallback responseCallback) {
+            synchronized (this) {
+                if (subscription.filtered) {
+                    filtered.add(subscription.matcher, subscription);
+                } else {
+                    unfiltered.add(subscription);
+                }
+
+                for (Map.Entry<String, JsonObject> entry : lastEvents.entrySet()) {
+                    if (subscription.filtered && !subscription.matcher.matches(entry.getKey())) {
+                        continue;
+                    }
+
+                    JsonObject add = new JsonObject();
+                    add.addProperty("event", FetchEvent.ADD);
+                    add.addProperty("path", entry.getKey());
+                    JsonElement value = entry.getValue().get("value");
+                    if (value != null) {
+                        add.add("value", value);
+                    }
+                    enqueue(Collections.singletonList(subscription), add);
+                }
+
+                if (responseCallback != null) {
+                    if (responded) {
+                        enqueue(Collections.singletonList(responseCallback), completed, response);
+                    } else {
+                        waitingCallbacks.add(responseCallback);
+                    }
+                }
+            }
+            deliverQueued();
+        }
+
+        synchronized void leave(Subscription subscription) {
+            subscription.active = false;
+            if (subscription.filtered) {
+                filtered.remove(subscription);
+            } else {
+                unfiltered.remove(subscription);
+            }
+        }
+
+        @Override
+        public void onFetchEvent(JsonObject params) {
+            synchronized (this) {
+                JsonElement pathElement = params.get("path");
+                String path = ((pathElement != null) && pathElement.isJsonPrimitive()) ? pathElement.getAsString() : null;
+                if (path != null) {
+                    JsonElement event = params.get("event");
+                    if ((event != null) && FetchEvent.REMOVE.equals(event.getAsString())) {
+                        lastEvents.remove(path);
+                    } else {
+                        lastEvents.put(path, params);
+                    }
+                }
+
+                List<Subscription> targets = new ArrayList<>(unfiltered);
+                if ((path != null) && !filtered.isEmpty()) {
+                    filtered.match(path, targets);
+                }
+                if (!targets.isEmpty()) {
+                    enqueue(targets, params);
+                }
+            }
+            deliverQueued();
+        }
+
+        @Override
+        public void onResponse(boolean completed, JsonObject response) {
+            synchronized (this) {
+                this.responded = true;
+                this.completed = completed;
+                this.response = response;
+                if (!waitingCallbacks.isEmpty()) {
+                    enqueue(new ArrayList<>(waitingCallbacks), completed, response);
+                    waitingCallbacks.clear();
+                }
+            }
+
+            if (!completed || response.has("error")) {
+                /*
+                 * Later subscribers with the same matcher try a new fetch.
+                 */
+                synchronized (FetchMultiplexer.this) {
+                    fetchesByKey.remove(key, this);
+                }
+            }
+            deliverQueued();
+        }
+
+        /**
+         * The peer lost its connection. Every subscriber gets a
+         * {@code remove} for each path it knows, a restored daemon fetch
+         * adds them again.
+         */
+        @Override
+        public void onFetchReset() {
+            synchronized (this) {
+                for (Map.Entry<String, JsonObject> entry : lastEvents.entrySet()) {
+                    List<Subscription> targets = new ArrayList<>(unfiltered);
+                    if (!filtered.isEmpty()) {
+                        filtered.match(entry.getKey(), targets);
+                    }
+                    if (targets.isEmpty()) {
+                        continue;
+                    }
+
+                    JsonObject remove = new JsonObject();
+                    remove.addProperty("event", FetchEvent.REMOVE);
+                    remove.addProperty("path", entry.getKey());
+                    JsonElement value = entry.getValue().get("value");
+                    if (value != null) {
+                        remove.add("value", value);
+                    }
+                    enqueue(targets, remove);
+                }
+                lastEvents.clear();
+            }
+            deliverQueued();
+        }
+
+        /**
+         * The daemon fetch couldn't be sent. Fails the waiting response
+         * callbacks except {@code excluded}, whose caller gets the exception,
+         * and detaches all subscribers.
+         */
+        void abort(ResponseCallback excluded, JsonObject error) {
+            synchronized (this) {
+                responded = true;
+                completed = false;
+                response = error;
+                waitingCallbacks.remove(excluded);
+                if (!waitingCallbacks.isEmpty()) {
+                    enqueue(new ArrayList<>(waitingCallbacks), false, error);
+                    waitingCallbacks.clear();
+                }
+
+                for (Subscription subscription : unfiltered) {
+                    subscription.active = false;
+                }
+                unfiltered.clear();
+                filtered = new MatcherIndex<>();
+            }
+            deliverQueued();
+        }
+
+        private void enqueue(final List<Subscription> targets, final JsonObject params) {
+            deliveries.add(new Runnable() {
+                @Override
+                public void run() {
+                    for (Subscription subscription : targets) {
+                        subscription.deliver(params);
+                    }
+                }
+            });
+        }
+
+        private void enqueue(final List<ResponseCallback> callbacks, final boolean completed, final JsonObject response) {
+            deliveries.add(new Runnable() {
+                @Override
+                public void run() {
+                    for (ResponseCallback callback : callbacks) {
+                        try {
+                            callback.onResponse(completed, response);
+                        } catch (RuntimeException e) {
+                            LOGGER.log(Level.SEVERE, "Exception in response callback", e);
+                        }
+                    }
+                }
+            });
+        }
+
+        /**
+         * Runs the queued deliveries unless another thread already does.
+         * Must be called without holding the lock.
+         */
+        private void deliverQueued() {
+            while (true) {
+                final Runnable delivery;
+                synchronized (this) {
+                    if (delivering || deliveries.isEmpty()) {
+                        return;
+                    }
+                    delivering = true;
+                    delivery = deliveries.poll();
+                }
+
+                try {
+                    delivery.run();
+                } finally {
+                    synchronized (this) {
+                        delivering = false;
+                    }
+                }
+            }
+        }
+    }
+}
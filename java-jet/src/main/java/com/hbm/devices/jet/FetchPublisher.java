@@ -0,0 +1,317 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonObject;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Flow.Publisher} of fetch events.
+ *
+ * Each subscription issues its own {@code fetch} on the {@link Peer} and
+ * buffers at most {@code bufferSize} events until the subscriber requests
+ * them. If the buffer is full, the {@link OverflowPolicy} decides which events
+ * get lost, so a slow subscriber never blocks the thread reading from the
+ * connection. Events are delivered on the given executor, cancelling the
+ * subscription sends an {@code unfetch} to the daemon.
+ */
+public class FetchPublisher implements Flow.Publisher<FetchEvent> {
+
+    private final Peer peer;
+    private final Matcher matcher;
+    private final int bufferSize;
+    private final OverflowPolicy policy;
+    private final Executor executor;
+    private final int responseTimeoutMs;
+
+    public FetchPublisher(Peer peer, Matcher matcher, int bufferSize, OverflowPolicy policy, int responseTimeoutMs) {
+        this(peer, matcher, bufferSize, policy, ForkJoinPool.commonPool(), responseTimeoutMs);
+    }
+
+    public FetchPublisher(Peer peer, Matcher matcher, int bufferSize, OverflowPolicy policy, Executor executor, int responseTimeoutMs) {
+        if (peer == null) {
+            throw new NullPointerException("peer");
+        }
+        if (matcher == null) {
+            throw new NullPointerException("matcher");
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize");
+        }
+        if (policy == null) {
+            throw new NullPointerException("policy");
+        }
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+
+        this.peer = peer;
+        this.matcher = matcher;
+        this.bufferSize = bufferSize;
+        this.policy = policy;
+        this.executor = executor;
+        this.responseTimeoutMs = responseTimeoutMs;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super FetchEvent> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+
+        FetchSubscription subscription = new FetchSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.start();
+    }
+
+    private class FetchSubscription implements Flow.Subscription, FetchEventCallback, ResponseCallback, Runnable {
+
+        private final Flow.Subscriber<? super FetchEvent> subscriber;
+        private final ArrayDeque<FetchEvent> queue;
+        private final LinkedHashMap<String, FetchEvent> latest;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private FetchId fetchId;
+        private boolean cancelled;
+        private Throwable error;
+        private boolean terminated;
+
+        private FetchSubscription(Flow.Subscriber<? super FetchEvent> subscriber) {
+            this.subscriber = subscriber;
+            if (policy == OverflowPolicy.CONFLATE) {
+                this.queue = null;
+                this.latest = new LinkedHashMap<>();
+            } else {
+                this.queue = new ArrayDeque<>();
+                this.latest = null;
+            }
+        }
+
+        private void start() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+            }
+
+            FetchId id;
+            try {
+                id = peer.fetch(matcher, this, this, responseTimeoutMs);
+            } catch (RuntimeException e) {
+                fail(e);
+                return;
+            }
+
+            boolean unfetch;
+            synchronized (this) {
+                fetchId = id;
+                unfetch = cancelled;
+            }
+            if (unfetch) {
+                unfetch();
+            }
+        }
+
+        @Override
+        public void onFetchEvent(JsonObject params) {
+            FetchEvent event = new FetchEvent(params);
+            boolean overflow = false;
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+
+                if (latest != null) {
+                    String path = event.getPath();
+                    if (!latest.containsKey(path) && (latest.size() >= bufferSize)) {
+                        Iterator<Map.Entry<String, FetchEvent>> it = latest.entrySet().iterator();
+                        it.next();
+                        it.remove();
+                    }
+                    latest.put(path, event);
+                } else if (queue.size() < bufferSize) {
+                    queue.add(event);
+                } else if (policy == OverflowPolicy.DROP_OLDEST) {
+                    queue.poll();
+                    queue.add(event);
+                } else {
+                    overflow = true;
+                }
+            }
+
+            if (overflow) {
+                fail(new IllegalStateException("fetch buffer overflow, subscriber too slow"));
+            } else {
+                drain();
+            }
+        }
+
+        @Override
+        public void onResponse(boolean completed, JsonObject response) {
+            if (!completed || response.has("error")) {
+                fail(JsonRpcException.fromError(response.get("error")));
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("non-positive request: " + n));
+                return;
+            }
+
+            long current;
+            long next;
+            do {
+                current = requested.get();
+                next = current + n;
+                if (next < 0) {
+                    next = Long.MAX_VALUE;
+                }
+            } while (!requested.compareAndSet(current, next));
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            terminate(null);
+        }
+
+        private void fail(Throwable throwable) {
+            if (terminate(throwable)) {
+                drain();
+            }
+        }
+
+        private boolean terminate(Throwable throwable) {
+            boolean unfetch;
+            synchronized (this) {
+                if (cancelled) {
+                    return false;
+                }
+                cancelled = true;
+                error = throwable;
+                unfetch = fetchId != null;
+                clear();
+            }
+            if (unfetch) {
+                unfetch();
+            }
+            return true;
+        }
+
+        private void unfetch() {
+            try {
+                peer.unfetch(fetchId, null, 0);
+            } catch (IllegalStateException e) {
+                /*
+                 * The peer is already closed, there is nothing left to unfetch.
+                 */
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            while (true) {
+                if (!deliverTerminal()) {
+                    long emitted = 0;
+                    long limit = requested.get();
+                    while (emitted < limit) {
+                        FetchEvent event = poll();
+                        if (event == null) {
+                            break;
+                        }
+                        subscriber.onNext(event);
+                        emitted++;
+                    }
+                    if (emitted > 0) {
+                        requested.addAndGet(-emitted);
+                    }
+                    deliverTerminal();
+                }
+
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private boolean deliverTerminal() {
+            Throwable throwable;
+            synchronized (this) {
+                if (!cancelled) {
+                    return false;
+                }
+                if (terminated || (error == null)) {
+                    return true;
+                }
+                terminated = true;
+                throwable = error;
+            }
+            subscriber.onError(throwable);
+            return true;
+        }
+
+        private synchronized FetchEvent poll() {
+            if (cancelled) {
+                return null;
+            }
+            if (latest != null) {
+                Iterator<FetchEvent> it = latest.values().iterator();
+                if (!it.hasNext()) {
+                    return null;
+                }
+                FetchEvent event = it.next();
+                it.remove();
+                return event;
+            }
+            return queue.poll();
+        }
+
+        private void clear() {
+            if (latest != null) {
+                latest.clear();
+            } else {
+                queue.clear();
+            }
+        }
+    }
+}
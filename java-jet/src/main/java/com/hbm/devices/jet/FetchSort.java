@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+/**
+ * Sorts the states matched by a fetch and restricts the fetch to a window of
+ * the sorted list.
+ *
+ * The daemon keeps the window up to date and only sends the entries that
+ * changed their position or value. Notifications of a sorted fetch don't
+ * carry an {@code event}, but the number of entries in the window {@code n}
+ * and an array of {@code changes}, each with {@code path}, {@code value}
+ * and the 1-based {@code index} in the sorted list. {@link SortedFetch}
+ * applies these notifications to a local copy of the window.
+ */
+public class FetchSort {
+
+    public static final String NUMBER = "number";
+    public static final String STRING = "string";
+    public static final String BOOLEAN = "boolean";
+
+    /**
+     * The largest number of entries a window might span. Both the peer and
+     * the daemon keep an array of this size per sorted fetch.
+     */
+    public static final int MAX_WINDOW_SIZE = 10000;
+
+    /**
+     * The 1-based index of the first entry in the window.
+     */
+    public int from = 1;
+
+    /**
+     * The 1-based index of the last entry in the window, inclusive.
+     */
+    public int to = 10;
+
+    public boolean descending;
+
+    /**
+     * The type of the values to sort by, one of {@link #NUMBER},
+     * {@link #STRING} or {@link #BOOLEAN}. States with values of another type
+     * are left out. {@code null} sorts by path.
+     */
+    public String byValue;
+
+    /**
+     * If set, sorts by this field of object values instead of the value
+     * itself, nested fields are separated by dots. The type of the field is
+     * given by {@link #byValue}.
+     */
+    public String byValueField;
+
+    boolean isValid() {
+        return (from >= 1) && (to >= from) && (to - from < MAX_WINDOW_SIZE) && ((byValueField == null) || (byValue != null));
+    }
+
+    int getWindowSize() {
+        return to - from + 1;
+    }
+}
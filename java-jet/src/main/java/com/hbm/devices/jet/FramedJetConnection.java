@@ -0,0 +1,260 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Base class of {@link JetConnection}s that transport the plain Jet protocol
+ * over a stream socket.
+ *
+ * Each message is a UTF-8 encoded JSON text preceded by its length as a
+ * 4 byte big-endian integer. Compared to a WebSocket connection there is no
+ * HTTP upgrade and no frame masking. Header and payload are written with a
+ * single gathering write from direct buffers, incoming messages are decoded
+ * straight out of the receive buffer. Messages are received on a dedicated
+ * reader thread.
+ */
+abstract class FramedJetConnection extends JetConnection {
+
+    static final int HEADER_SIZE = 4;
+    static final int MAX_MESSAGE_SIZE = 64 * 1024 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(JetConstants.LOGGER_NAME);
+
+    private final Object sendLock = new Object();
+    private final CharsetEncoder encoder;
+    private final ByteBuffer sendHeader;
+    private final ByteBuffer[] sendBuffers;
+    private ByteBuffer sendPayload;
+
+    private volatile SocketChannel channel;
+    private volatile boolean connected;
+
+    FramedJetConnection() {
+        /*
+         * Gson writes lone surrogates of strings as they are. Replace them
+         * like String.getBytes() does for WebSocket connections instead of
+         * failing the connection.
+         */
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.sendHeader = ByteBuffer.allocateDirect(HEADER_SIZE);
+        this.sendPayload = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+        this.sendBuffers = new ByteBuffer[]{sendHeader, sendPayload};
+    }
+
+    /**
+     * Opens and connects the channel to the daemon. Called on the reader
+     * thread.
+     */
+    abstract SocketChannel open(int timeoutMs) throws IOException;
+
+    /**
+     * @return The address of the daemon, used in log messages.
+     */
+    abstract String getAddress();
+
+    @Override
+    void connect(final ConnectionCompleted completed, final int timeoutMs) {
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                SocketChannel ch;
+                try {
+                    ch = open(timeoutMs);
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, "Can't connect to " + getAddress(), e);
+                    completed.completed(false);
+                    return;
+                }
+
+                channel = ch;
+                connected = true;
+                completed.completed(true);
+                readMessages(ch);
+            }
+        }, "jet-reader " + getAddress());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    void disconnect() {
+        connected = false;
+        SocketChannel ch = channel;
+        if (ch != null) {
+            try {
+                ch.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Error while closing connection", e);
+            }
+        }
+    }
+
+    @Override
+    boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    void sendMessage(String message) {
+        final SocketChannel ch = channel;
+        if (ch == null) {
+            throw new IllegalStateException("not connected");
+        }
+
+        synchronized (sendLock) {
+            try {
+                encode(message);
+                countSent(sendPayload.remaining());
+                while (sendPayload.hasRemaining()) {
+                    ch.write(sendBuffers);
+                }
+            } catch (ClosedChannelException e) {
+                connected = false;
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Can't send message", e);
+                disconnect();
+            }
+        }
+    }
+
+    private void encode(String message) throws CharacterCodingException {
+        final int maxLength = message.length() * 3;
+        if (sendPayload.capacity() < maxLength) {
+            sendPayload = ByteBuffer.allocateDirect(Math.max(maxLength, sendPayload.capacity() * 2));
+            sendBuffers[1] = sendPayload;
+        }
+
+        sendPayload.clear();
+        encoder.reset();
+        CoderResult result = encoder.encode(CharBuffer.wrap(message), sendPayload, true);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        encoder.flush(sendPayload);
+        sendPayload.flip();
+
+        sendHeader.clear();
+        sendHeader.putInt(sendPayload.remaining());
+        sendHeader.flip();
+    }
+
+    private void readMessages(SocketChannel ch) {
+        final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+        try {
+            while (ch.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.remaining() >= HEADER_SIZE) {
+                    final int start = buffer.position();
+                    final int length = buffer.getInt(start);
+                    if ((length < 0) || (length > MAX_MESSAGE_SIZE)) {
+                        throw new IOException("invalid message length " + length);
+                    }
+
+                    if (buffer.remaining() - HEADER_SIZE < length) {
+                        if (HEADER_SIZE + length > buffer.capacity()) {
+                            buffer = grow(buffer, HEADER_SIZE + length);
+                        }
+                        break;
+                    }
+
+                    final int end = start + HEADER_SIZE + length;
+                    final int limit = buffer.limit();
+                    buffer.position(start + HEADER_SIZE);
+                    buffer.limit(end);
+                    if (chars.capacity() < length) {
+                        chars = CharBuffer.allocate(length);
+                    }
+                    chars.clear();
+                    decoder.reset();
+                    CoderResult result = decoder.decode(buffer, chars, true);
+                    if (!result.isUnderflow()) {
+                        result.throwException();
+                    }
+                    decoder.flush(chars);
+                    countReceived(length);
+                    buffer.limit(limit);
+                    buffer.position(end);
+
+                    onTextMessage(new String(chars.array(), 0, chars.position()));
+                }
+                buffer.compact();
+            }
+        } catch (ClosedChannelException e) {
+            /*
+             * The connection was closed by disconnect().
+             */
+        } catch (IOException e) {
+            if (connected) {
+                LOGGER.log(Level.SEVERE, "Connection to " + getAddress() + " failed", e);
+            }
+        } finally {
+            connected = false;
+            try {
+                ch.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Error while closing connection", e);
+            }
+            notifyDisconnected();
+        }
+    }
+
+    /*
+     * Only called if a single message doesn't fit into the receive buffer.
+     */
+    private static ByteBuffer grow(ByteBuffer buffer, int required) {
+        int capacity = buffer.capacity();
+        while (capacity < required) {
+            capacity *= 2;
+        }
+        ByteBuffer larger = ByteBuffer.allocateDirect(capacity);
+        larger.put(buffer);
+        larger.flip();
+        return larger;
+    }
+
+    void onTextMessage(String text) {
+        setChanged();
+        notifyObservers(text);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonPrimitive;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event spanning the invocation of a state, method or fetch
+ * callback. For asynchronous callbacks the event ends when the returned stage
+ * completed.
+ */
+@Name("com.hbm.devices.jet.Callback")
+@Label("Jet Callback")
+@Category("Jet")
+@Description("A state, method or fetch callback was invoked")
+class JetCallbackEvent extends jdk.jfr.Event {
+
+    private static final EventType TYPE = EventType.getEventType(JetCallbackEvent.class);
+
+    static final String STATE = "state";
+    static final String METHOD = "method";
+    static final String FETCH = "fetch";
+
+    @Label("Kind")
+    String kind;
+
+    @Label("Path")
+    String path;
+
+    @Label("Request Id")
+    String requestId;
+
+    @Label("Fetch Id")
+    int fetchId;
+
+    /**
+     * @return A started event, {@code null} if the event is disabled. Only
+     * called through {@link JetEvents#startCallback()}.
+     */
+    static JetCallbackEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        final JetCallbackEvent event = new JetCallbackEvent();
+        event.begin();
+        return event;
+    }
+
+    void finish(String kind, String path, JsonPrimitive requestId, int fetchId) {
+        end();
+        if (shouldCommit()) {
+            this.kind = kind;
+            this.path = path;
+            this.requestId = (requestId != null) ? requestId.getAsString() : null;
+            this.fetchId = fetchId;
+            commit();
+        }
+    }
+}
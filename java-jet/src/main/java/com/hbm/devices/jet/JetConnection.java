@@ -24,9 +24,27 @@
 package com.hbm.devices.jet;
 
 import java.util.Observable;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class JetConnection extends Observable {
 
+    interface ConnectionListener {
+
+        /**
+         * Called when an established connection is lost or closed.
+         */
+        void disconnected();
+
+        /**
+         * Called when bytes queued by {@link #enqueued(int)} were sent.
+         */
+        void sent();
+    }
+
+    private volatile ConnectionListener connectionListener;
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final ConnectionMetrics metrics = new ConnectionMetrics();
+
     abstract void connect(final ConnectionCompleted completed, int timeoutMs);
 
     abstract void disconnect();
@@ -34,4 +52,69 @@ public abstract class JetConnection extends Observable {
     abstract boolean isConnected();
 
     abstract void sendMessage(String message);
+
+    void setConnectionListener(ConnectionListener listener) {
+        this.connectionListener = listener;
+    }
+
+    /**
+     * @return The traffic counters of this connection.
+     */
+    public ConnectionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Called by subclasses for every frame handed to the transport.
+     */
+    void countSent(int bytes) {
+        metrics.sent(bytes);
+    }
+
+    /**
+     * Called by subclasses for every frame received from the transport.
+     */
+    void countReceived(int bytes) {
+        metrics.received(bytes);
+    }
+
+    /**
+     * @return The number of bytes passed to {@link #sendMessage(String)} but
+     * not yet written to the network. Always {@code 0} for connections that
+     * write synchronously.
+     */
+    long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    /**
+     * Called by connections that send asynchronously when a message was
+     * queued for sending.
+     */
+    void enqueued(int bytes) {
+        queuedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Called by connections that send asynchronously when a queued message
+     * was sent or dropped.
+     */
+    void dequeued(int bytes) {
+        queuedBytes.addAndGet(-bytes);
+        ConnectionListener listener = this.connectionListener;
+        if (listener != null) {
+            listener.sent();
+        }
+    }
+
+    void resetQueuedBytes() {
+        queuedBytes.set(0);
+    }
+
+    void notifyDisconnected() {
+        ConnectionListener listener = this.connectionListener;
+        if (listener != null) {
+            listener.disconnected();
+        }
+    }
 }
@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+/**
+ * Entry point to the flight recorder events of the library.
+ *
+ * The event classes extend {@code jdk.jfr.Event}, which is missing on
+ * Android and on Java runtimes before 11. They must only be loaded if
+ * {@link #AVAILABLE} is {@code true}, all other code only touches them
+ * through the methods of this class or after checking for {@code null}.
+ * If an event is disabled in the running recordings, no event object
+ * escapes and nothing but the enabled check is executed.
+ */
+final class JetEvents {
+
+    static final boolean AVAILABLE = isAvailable();
+
+    private JetEvents() {
+    }
+
+    /**
+     * @return A started event, {@code null} if flight recorder is not
+     * available or the event is disabled.
+     */
+    static JetFrameEvent startFrame() {
+        return AVAILABLE ? JetFrameEvent.start() : null;
+    }
+
+    /**
+     * @return A started event, {@code null} if flight recorder is not
+     * available or the event is disabled.
+     */
+    static JetRequestEvent startRequest() {
+        return AVAILABLE ? JetRequestEvent.start() : null;
+    }
+
+    /**
+     * @return A started event, {@code null} if flight recorder is not
+     * available or the event is disabled.
+     */
+    static JetCallbackEvent startCallback() {
+        return AVAILABLE ? JetCallbackEvent.start() : null;
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, JetEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
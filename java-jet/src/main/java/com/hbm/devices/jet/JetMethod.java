@@ -23,11 +23,11 @@
  */
 package com.hbm.devices.jet;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 
-class JetMethod {
+class JetMethod extends TimingWheel.Timeout {
 
     static final String AUTHENTICATE = "authenticate";
     static final String PASSWD = "passwd";
@@ -47,10 +47,17 @@ class JetMethod {
     private final ResponseCallback responseCallback;
     private int requestId;
     private final JsonObject json;
-    private ScheduledFuture<Void> future;
+    private final String method;
+    private final boolean isControl;
+    private boolean inWindow;
+    private RequestMetrics metrics;
+    private long sentNanos;
+    private JetRequestEvent event;
 
     JetMethod(final String method, JsonObject parameters, ResponseCallback responseCallback) {
         this.responseCallback = responseCallback;
+        this.method = method;
+        this.isControl = CALL.equals(method) || SET.equals(method) || AUTHENTICATE.equals(method) || CONFIG.equals(method) || PASSWD.equals(method) || INFO.equals(method);
         this.json = new JsonObject();
         this.json.addProperty("jsonrpc", "2.0");
         this.json.addProperty("method", method);
@@ -64,6 +71,83 @@ class JetMethod {
         }
     }
 
+    /**
+     * @return {@code true} if the request is sent on the control lane of
+     * {@link SendLanes}, {@code false} for the bulk lane.
+     */
+    boolean isControl() {
+        return isControl;
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    /**
+     * Remembers when the request was sent, to record its round trip time in
+     * {@code metrics} when the response arrives.
+     */
+    void sent(RequestMetrics metrics) {
+        this.metrics = metrics;
+        this.sentNanos = System.nanoTime();
+        metrics.sent();
+    }
+
+    void responded(boolean error) {
+        if (metrics != null) {
+            metrics.responded(System.nanoTime() - sentNanos, error);
+        }
+    }
+
+    void timedOut() {
+        if (metrics != null) {
+            metrics.timedOut();
+        }
+    }
+
+    /**
+     * Starts the flight recorder event of this request, if enabled. Requests
+     * without response callback are committed immediately.
+     */
+    void startEvent(int requestChars) {
+        final JetRequestEvent e = JetEvents.startRequest();
+        if (e == null) {
+            return;
+        }
+
+        e.method = method;
+        e.requestId = requestId;
+        e.requestChars = requestChars;
+        JsonElement parameters = json.get("params");
+        if ((parameters != null) && parameters.isJsonObject()) {
+            JsonElement path = parameters.getAsJsonObject().get("path");
+            if ((path != null) && path.isJsonPrimitive()) {
+                e.path = path.getAsString();
+            }
+        }
+
+        if (hasResponseCallback()) {
+            this.event = e;
+        } else {
+            e.commit();
+        }
+    }
+
+    void finishEvent(boolean error, boolean timedOut) {
+        final JetRequestEvent e = event;
+        if (e == null) {
+            return;
+        }
+
+        event = null;
+        e.end();
+        if (e.shouldCommit()) {
+            e.error = error;
+            e.timedOut = timedOut;
+            e.commit();
+        }
+    }
+
     boolean hasResponseCallback() {
         return responseCallback != null;
     }
@@ -72,18 +156,18 @@ class JetMethod {
         return requestId;
     }
 
-    JsonObject getJson() {
-        return json;
+    boolean isInWindow() {
+        return inWindow;
     }
 
-    void addFuture(ScheduledFuture<Void> future) {
-        this.future = future;
+    void setInWindow(boolean inWindow) {
+        this.inWindow = inWindow;
     }
-    
-    ScheduledFuture<Void> getFuture() {
-        return this.future;
+
+    JsonObject getJson() {
+        return json;
     }
-    
+
     void callResponseCallback(boolean completed, JsonObject response) {
         if (hasResponseCallback()) {
             responseCallback.onResponse(completed, response);
@@ -28,52 +28,98 @@ import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSyntaxException;
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class JetPeer implements Peer, Observer, Closeable {
 
     private final JetConnection connection;
-    private final Map<Integer, FetchEventCallback> openFetches;
-    private final Map<Integer, JetMethod> openRequests;
-    private final Map<String, StateCallback> stateCallbacks;
-    private final Map<String, MethodCallback> methodCallbacks;
-    private final Set<FetchId> allFetches;
+    private final ConcurrentIntMap<FetchRegistration> fetches;
+    private final ConcurrentIntMap<JetMethod> openRequests;
+    private final Map<String, StateRegistration> states;
+    private final Map<String, MethodRegistration> methods;
     private final Gson gson;
-    private final JsonParser parser;
+    private final StreamingDispatcher dispatcher;
     private final ScheduledThreadPoolExecutor executor;
-
-    private boolean isClosed = false;
+    private final SendLanes lanes;
+    private final MessageBatcher batcher;
+    private final TimingWheel timeouts;
+    private final ReconnectPolicy reconnectPolicy;
+    private final ConcurrentLinkedQueue<StateHandle> pendingPublishes;
+    private final AtomicBoolean publishTickStarted;
+    private final int publishTickMs;
+    private final Executor callbackExecutor;
+    private final SendWindow window;
+    private final PeerMetrics metrics;
+
+    private volatile boolean isClosed = false;
+    private volatile String peerName;
+    private volatile String user;
+    private volatile String password;
 
     private static final Logger LOGGER = Logger.getLogger(JetConstants.LOGGER_NAME);
 
     public JetPeer(JetConnection connection) {
+        this(connection, new PeerOptions());
+    }
+
+    public JetPeer(JetConnection connection, PeerOptions options) {
         this.executor = new ScheduledThreadPoolExecutor(1);
+        this.timeouts = new TimingWheel(options.timeoutTickMs, options.timeoutTicksPerWheel, new ResponseTimeoutHandler());
         this.connection = connection;
-        this.openFetches = new HashMap<>();
-        this.openRequests = new HashMap<>();
-        this.stateCallbacks = new HashMap<>();
-        this.methodCallbacks = new HashMap<>();
-        this.allFetches = new HashSet<>();
+        this.fetches = new ConcurrentIntMap<>();
+        this.openRequests = new ConcurrentIntMap<>();
+        this.states = new ConcurrentHashMap<>();
+        this.methods = new ConcurrentHashMap<>();
         this.gson = new GsonBuilder().create();
-        this.parser = new JsonParser();
+        this.dispatcher = new StreamingDispatcher(new MessageHandler());
+        this.lanes = new SendLanes(connection, options);
+        this.batcher = new MessageBatcher(lanes, executor, options);
+        this.reconnectPolicy = options.reconnectPolicy;
+        if (options.publishTickMs <= 0) {
+            throw new IllegalArgumentException("publishTickMs");
+        }
+        this.pendingPublishes = new ConcurrentLinkedQueue<>();
+        this.publishTickStarted = new AtomicBoolean();
+        this.publishTickMs = options.publishTickMs;
+        this.callbackExecutor = options.callbackExecutor;
+        this.window = SendWindow.isEnabled(options) ? new SendWindow(connection, options) : null;
+        if (options.metricsEnabled || !options.metricsExporters.isEmpty()) {
+            this.metrics = new PeerMetrics(openRequests, connection);
+        } else {
+            this.metrics = null;
+        }
+        this.executor.scheduleAtFixedRate(new TimeoutTickTask(), options.timeoutTickMs, options.timeoutTickMs, TimeUnit.MILLISECONDS);
+        if (!options.metricsExporters.isEmpty()) {
+            if (options.metricsExportIntervalMs <= 0) {
+                throw new IllegalArgumentException("metricsExportIntervalMs");
+            }
+            this.executor.scheduleAtFixedRate(new MetricsExportTask(new ArrayList<>(options.metricsExporters)), options.metricsExportIntervalMs, options.metricsExportIntervalMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
@@ -81,6 +127,7 @@ public class JetPeer implements Peer, Observer, Closeable {
         synchronized (this) {
             this.disconnect();
             this.isClosed = true;
+            executor.shutdown();
             try {
                 if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
                     executor.shutdownNow();
@@ -98,31 +145,61 @@ public class JetPeer implements Peer, Observer, Closeable {
     @Override
     public void connect(ConnectionCompleted connectionCompleted, int timeoutMs) {
         this.connection.addObserver(this);
+        this.connection.setConnectionListener(new ConnectionHandler());
         this.connection.connect(connectionCompleted, timeoutMs);
     }
 
     @Override
     public boolean isConnected() {
-        synchronized (this) {
-            return this.connection.isConnected();
+        return this.connection.isConnected();
+    }
+
+    /**
+     * @return The metrics of this peer, {@code null} if metrics are not
+     * enabled in the {@link PeerOptions}.
+     */
+    public PeerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns a future that completes as soon as a request can be sent without
+     * being held back by {@link PeerOptions#maxInFlightRequests} or
+     * {@link PeerOptions#maxSendQueueBytes}.
+     *
+     * @return A future completing when there is capacity, already completed
+     * if there is capacity now or no limits are configured.
+     */
+    @Override
+    public CompletableFuture<Void> whenWritable() {
+        if (window == null) {
+            return CompletableFuture.completedFuture(null);
         }
+        return window.whenWritable();
+    }
+
+    /**
+     * Sends all messages that are currently collected in a batch.
+     *
+     * Does nothing if batching is not enabled in the {@link PeerOptions} of
+     * this peer.
+     */
+    @Override
+    public void flush() {
+        batcher.flush();
     }
 
     @Override
     public void config(final String peerName, ResponseCallback responseCallback, int timeoutMs) {
-        JsonObject parameters = new JsonObject();
-        parameters.addProperty("name", peerName);
-        JetMethod config = new JetMethod(JetMethod.CONFIG, parameters, responseCallback);
-        this.executeMethod(config, timeoutMs);
+        this.peerName = peerName;
+        this.executeMethod(createConfig(peerName, responseCallback), timeoutMs);
     }
 
     @Override
     public void authenticate(final String user, final String password, ResponseCallback responseCallback, int timeoutMs) {
-        JsonObject credentials = new JsonObject();
-        credentials.addProperty("user", user);
-        credentials.addProperty("password", password);
-        JetMethod auth = new JetMethod(JetMethod.AUTHENTICATE, credentials, responseCallback);
-        this.executeMethod(auth, timeoutMs);
+        this.user = user;
+        this.password = password;
+        this.executeMethod(createAuthenticate(user, password, responseCallback), timeoutMs);
     }
 
     @Override
@@ -140,10 +217,8 @@ public class JetPeer implements Peer, Observer, Closeable {
             throw new IllegalArgumentException("path");
         }
 
-        synchronized (stateCallbacks) {
-            if (stateCallbacks.containsKey(path)) {
-                throw new IllegalArgumentException("Don't call set() on a state you own, use change() instead!");
-            }
+        if (states.containsKey(path)) {
+            throw new IllegalArgumentException("Don't call set() on a state you own, use change() instead!");
         }
 
         JsonObject parameters = new JsonObject();
@@ -168,10 +243,11 @@ public class JetPeer implements Peer, Observer, Closeable {
      * method succeeds or fails.
      * @param responseTimeoutMs The timeout in milliseconds how long the
      * {@code add} operation might take before failing.
+     * @return A handle to publish new values of the state.
      */
     @Override
-    public void addState(String path, JsonElement value, StateCallback stateCallback, int stateSetTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs) {
-        addState(path, value, null, null, stateCallback, stateSetTimeoutMs, responseCallback, responseTimeoutMs);
+    public StateHandle addState(String path, JsonElement value, StateCallback stateCallback, int stateSetTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs) {
+        return addState(path, value, null, null, stateCallback, stateSetTimeoutMs, responseCallback, responseTimeoutMs);
     }
 
     /**
@@ -191,32 +267,93 @@ public class JetPeer implements Peer, Observer, Closeable {
      * method succeeds or fails.
      * @param responseTimeoutMs The timeout in milliseconds how long the
      * {@code add} operation might take before failing.
+     * @return A handle to publish new values of the state.
+     */
+    @Override
+    public StateHandle addState(String path, JsonElement value, String[] setGroups, String[] fetchGroups, StateCallback stateCallback, int stateSetTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs) {
+        return addState(path, value, setGroups, fetchGroups, stateCallback, stateSetTimeoutMs, null, responseCallback, responseTimeoutMs);
+    }
+
+    /**
+     * Adds a state to jet whose {@code set} callbacks run on a dedicated
+     * executor.
+     *
+     * @param path The key under which the state will be published.
+     * @param value The initial value of the state.
+     * @param setGroups The list of groups that are allowed to set the state.
+     * @param fetchGroups The list of groups that are allowed to fetch the
+     * state.
+     * @param stateCallback The method to be called when the state is set via
+     * jet. Pass {@code null} to make the state {@code fetchOnly}.
+     * @param stateSetTimeoutMs The timeout in milliseconds how long a
+     * {@code set} operation on this state might take before the daemon signals
+     * timeout to the peer calling {@code set}.
+     * @param callbackExecutor The executor running {@code stateCallback},
+     * {@code null} uses the {@link PeerOptions#callbackExecutor} of the peer.
+     * Calls keep their order.
+     * @param responseCallback A callback method that will be called if this
+     * method succeeds or fails.
+     * @param responseTimeoutMs The timeout in milliseconds how long the
+     * {@code add} operation might take before failing.
+     * @return A handle to publish new values of the state.
      */
     @Override
-    public void addState(String path, JsonElement value, String[] setGroups, String[] fetchGroups, StateCallback stateCallback, int stateSetTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs) {
+    public StateHandle addState(String path, JsonElement value, String[] setGroups, String[] fetchGroups, StateCallback stateCallback, int stateSetTimeoutMs, Executor callbackExecutor, ResponseCallback responseCallback, int responseTimeoutMs) {
         if ((path == null) || (path.length() == 0)) {
             throw new IllegalArgumentException("path");
         }
 
-        JsonObject parameters = new JsonObject();
-        parameters.addProperty("path", path);
-        parameters.add("value", value);
-        parameters.addProperty("timeout", stateSetTimeoutMs / 1000.0);
-        if (stateCallback == null) {
-            parameters.addProperty("fetchOnly", true);
-        } else {
-            registerStateCallback(path, stateCallback);
+        StateRegistration state = new StateRegistration(path, value, setGroups, fetchGroups, stateCallback, null, stateSetTimeoutMs, createSerialExecutor(callbackExecutor));
+        return addState(state, responseCallback, responseTimeoutMs);
+    }
+
+    @Override
+    public StateHandle addAsyncState(String path, JsonElement value, AsyncStateCallback stateCallback, int stateSetTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs) {
+        return addAsyncState(path, value, null, null, stateCallback, stateSetTimeoutMs, responseCallback, responseTimeoutMs);
+    }
+
+    /**
+     * Adds a state to jet whose {@code set} operations complete
+     * asynchronously.
+     *
+     * The {@code set} is answered when the stage returned by
+     * {@code stateCallback} completes, or with an error if that takes longer
+     * than {@code stateSetTimeoutMs}. Many {@code set} operations might be
+     * pending at the same time.
+     *
+     * @param path The key under which the state will be published.
+     * @param value The initial value of the state.
+     * @param setGroups The list of groups that are allowed to set the state.
+     * @param fetchGroups The list of groups that are allowed to fetch the
+     * state.
+     * @param stateCallback The method to be called when the state is set via
+     * jet.
+     * @param stateSetTimeoutMs The timeout in milliseconds how long a
+     * {@code set} operation on this state might take.
+     * @param responseCallback A callback method that will be called if this
+     * method succeeds or fails.
+     * @param responseTimeoutMs The timeout in milliseconds how long the
+     * {@code add} operation might take before failing.
+     * @return A handle to publish new values of the state.
+     */
+    @Override
+    public StateHandle addAsyncState(String path, JsonElement value, String[] setGroups, String[] fetchGroups, AsyncStateCallback stateCallback, int stateSetTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs) {
+        if ((path == null) || (path.length() == 0)) {
+            throw new IllegalArgumentException("path");
         }
 
-        if ((setGroups != null) && (setGroups.length > 0) || ((fetchGroups != null) && (fetchGroups.length > 0))) {
-            JsonObject access = new JsonObject();
-            parameters.add("access", access);
-            access.add("setGroups", createJsonArray(setGroups));
-            access.add("fetchGroups", createJsonArray(fetchGroups));
+        if (stateCallback == null) {
+            throw new NullPointerException("stateCallback");
         }
+        StateRegistration state = new StateRegistration(path, value, setGroups, fetchGroups, null, stateCallback, stateSetTimeoutMs, createSerialExecutor(null));
+        return addState(state, responseCallback, responseTimeoutMs);
+    }
 
-        JetMethod add = new JetMethod(JetMethod.ADD, parameters, responseCallback);
+    private StateHandle addState(StateRegistration state, ResponseCallback responseCallback, int responseTimeoutMs) {
+        registerState(state);
+        JetMethod add = new JetMethod(JetMethod.ADD, createAddStateParameters(state), responseCallback);
         this.executeMethod(add, responseTimeoutMs);
+        return new StateHandle(this, state, gson);
     }
 
     @Override
@@ -225,7 +362,7 @@ public class JetPeer implements Peer, Observer, Closeable {
             throw new IllegalArgumentException("path");
         }
 
-        unregisterStateCallback(path);
+        unregisterState(path);
         sendRemove(path, responseCallback, responseTimeoutMs);
     }
 
@@ -235,12 +372,12 @@ public class JetPeer implements Peer, Observer, Closeable {
             throw new IllegalArgumentException("path");
         }
 
-        synchronized (stateCallbacks) {
-            if (!stateCallbacks.containsKey(path)) {
-                throw new IllegalArgumentException("don't call change() on a state you do not own");
-            }
+        StateRegistration state = states.get(path);
+        if (state == null) {
+            throw new IllegalArgumentException("don't call change() on a state you do not own");
         }
 
+        state.setValue(value);
         JsonObject parameters = new JsonObject();
         parameters.addProperty("path", path);
         parameters.add("value", value);
@@ -250,21 +387,36 @@ public class JetPeer implements Peer, Observer, Closeable {
 
     @Override
     public FetchId fetch(Matcher matcher, FetchEventCallback callback, ResponseCallback responseCallback, int timeoutMs) {
-        final FetchId fetchId = new FetchId();
+        return fetch(matcher, callback, null, responseCallback, timeoutMs);
+    }
 
-        JsonObject parameters = new JsonObject();
-        JsonObject path = fillPath(matcher);
-        if (path != null) {
-            parameters.add("path", path);
+    @Override
+    public FetchId fetch(Matcher matcher, FetchEventCallback callback, Executor callbackExecutor, ResponseCallback responseCallback, int timeoutMs) {
+        return fetch(matcher, null, callback, callbackExecutor, responseCallback, timeoutMs);
+    }
+
+    @Override
+    public FetchId fetch(Matcher matcher, FetchSort sort, FetchEventCallback callback, ResponseCallback responseCallback, int timeoutMs) {
+        if (sort == null) {
+            throw new NullPointerException("sort");
         }
-        parameters.addProperty("id", fetchId.getId());
-        parameters.addProperty("caseInsensitive", matcher.caseInsensitive);
+        return fetch(matcher, sort, callback, null, responseCallback, timeoutMs);
+    }
 
-        JetMethod fetch = new JetMethod(JetMethod.FETCH, parameters, responseCallback);
-        this.registerFetcher(fetchId.getId(), callback);
-        this.executeMethod(fetch, timeoutMs);
+    private FetchId fetch(Matcher matcher, FetchSort sort, FetchEventCallback callback, Executor callbackExecutor, ResponseCallback responseCallback, int timeoutMs) {
+        if ((sort != null) && !sort.isValid()) {
+            throw new IllegalArgumentException("sort");
+        }
+
+        final FetchId fetchId = new FetchId();
+        FetchRegistration registration = new FetchRegistration(fetchId, matcher, sort, callback, createSerialExecutor(callbackExecutor));
+        if (metrics != null) {
+            registration.callbackMetrics = metrics.addFetch(fetchId.getId());
+        }
+        fetches.put(fetchId.getId(), registration);
 
-        registerFetchId(fetchId);
+        JetMethod fetch = new JetMethod(JetMethod.FETCH, createFetchParameters(registration), responseCallback);
+        this.executeMethod(fetch, timeoutMs);
         return fetchId;
     }
 
@@ -277,6 +429,7 @@ public class JetPeer implements Peer, Observer, Closeable {
         }
         
         parameters.addProperty("caseInsensitive", matcher.caseInsensitive);
+        fillValue(parameters, matcher);
 
         JetMethod get = new JetMethod(JetMethod.GET, parameters, responseCallback);
         this.executeMethod(get, responseTimeoutMs);
@@ -284,8 +437,10 @@ public class JetPeer implements Peer, Observer, Closeable {
     
     @Override
     public void unfetch(FetchId id, ResponseCallback responseCallback, int responseTimeoutMs) {
-        this.unregisterFetcher(id.getId());
-        unRegisterFetchId(id);
+        fetches.remove(id.getId());
+        if (metrics != null) {
+            metrics.removeFetch(id.getId());
+        }
         sendUnfetch(id, responseCallback, responseTimeoutMs);
     }
 
@@ -295,10 +450,8 @@ public class JetPeer implements Peer, Observer, Closeable {
             throw new IllegalArgumentException("path");
         }
 
-        synchronized (methodCallbacks) {
-            if (methodCallbacks.containsKey(path)) {
-                throw new IllegalArgumentException("Don't call call() on a method you own!");
-            }
+        if (methods.containsKey(path)) {
+            throw new IllegalArgumentException("Don't call call() on a method you own!");
         }
 
         JsonObject parameters = new JsonObject();
@@ -318,6 +471,11 @@ public class JetPeer implements Peer, Observer, Closeable {
 
     @Override
     public void addMethod(String path, String[] callGroups, String[] fetchGroups, MethodCallback methodCallback, int methodCallTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs) {
+        addMethod(path, callGroups, fetchGroups, methodCallback, methodCallTimeoutMs, null, responseCallback, responseTimeoutMs);
+    }
+
+    @Override
+    public void addMethod(String path, String[] callGroups, String[] fetchGroups, MethodCallback methodCallback, int methodCallTimeoutMs, Executor callbackExecutor, ResponseCallback responseCallback, int responseTimeoutMs) {
         if ((path == null) || (path.length() == 0)) {
             throw new IllegalArgumentException("path");
         }
@@ -325,20 +483,53 @@ public class JetPeer implements Peer, Observer, Closeable {
         if (methodCallback == null) {
             throw new NullPointerException("methodCallback");
         }
-        JsonObject parameters = new JsonObject();
-        parameters.addProperty("path", path);
-        parameters.addProperty("timeout", methodCallTimeoutMs / 1000.0);
+        MethodRegistration method = new MethodRegistration(path, callGroups, fetchGroups, methodCallback, null, methodCallTimeoutMs, createSerialExecutor(callbackExecutor));
+        addMethod(method, responseCallback, responseTimeoutMs);
+    }
 
-        registerMethodCallback(path, methodCallback);
+    @Override
+    public void addAsyncMethod(String path, AsyncMethodCallback methodCallback, int methodCallTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs) {
+        addAsyncMethod(path, null, null, methodCallback, methodCallTimeoutMs, responseCallback, responseTimeoutMs);
+    }
 
-        if ((callGroups != null) && (callGroups.length > 0) || ((fetchGroups != null) && (fetchGroups.length > 0))) {
-            JsonObject access = new JsonObject();
-            parameters.add("access", access);
-            access.add("callGroups", createJsonArray(callGroups));
-            access.add("fetchGroups", createJsonArray(fetchGroups));
+    /**
+     * Adds a method to jet whose calls complete asynchronously.
+     *
+     * A call is answered when the stage returned by {@code methodCallback}
+     * completes, or with an error if that takes longer than
+     * {@code methodCallTimeoutMs}. Many calls might be pending at the same
+     * time.
+     *
+     * @param path The key under which the method will be published.
+     * @param callGroups The list of groups that are allowed to call the
+     * method.
+     * @param fetchGroups The list of groups that are allowed to fetch the
+     * method.
+     * @param methodCallback The method to be called when the method is called
+     * via jet.
+     * @param methodCallTimeoutMs The timeout in milliseconds how long a call
+     * might take.
+     * @param responseCallback A callback method that will be called if this
+     * method succeeds or fails.
+     * @param responseTimeoutMs The timeout in milliseconds how long the
+     * {@code add} operation might take before failing.
+     */
+    @Override
+    public void addAsyncMethod(String path, String[] callGroups, String[] fetchGroups, AsyncMethodCallback methodCallback, int methodCallTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs) {
+        if ((path == null) || (path.length() == 0)) {
+            throw new IllegalArgumentException("path");
+        }
+
+        if (methodCallback == null) {
+            throw new NullPointerException("methodCallback");
         }
+        MethodRegistration method = new MethodRegistration(path, callGroups, fetchGroups, null, methodCallback, methodCallTimeoutMs, createSerialExecutor(null));
+        addMethod(method, responseCallback, responseTimeoutMs);
+    }
 
-        JetMethod add = new JetMethod(JetMethod.ADD, parameters, responseCallback);
+    private void addMethod(MethodRegistration method, ResponseCallback responseCallback, int responseTimeoutMs) {
+        registerMethod(method);
+        JetMethod add = new JetMethod(JetMethod.ADD, createAddMethodParameters(method), responseCallback);
         this.executeMethod(add, responseTimeoutMs);
     }
 
@@ -348,80 +539,351 @@ public class JetPeer implements Peer, Observer, Closeable {
             throw new IllegalArgumentException("path");
         }
 
-        unregisterMethodCallback(path);
+        unregisterMethod(path);
         sendRemove(path, responseCallback, responseTimeoutMs);
     }
 
+    /**
+     * Adds many states to jet at once.
+     *
+     * The {@code add} requests are corked, so they leave in as few frames as
+     * the batch limits of the {@link PeerOptions} allow. The responses are
+     * collected into a single {@link BulkResult}. A state whose {@code add}
+     * failed stays registered in the peer, like with {@code addState}.
+     *
+     * @param states The states to add, each path at most once.
+     * @param callback Called once all requests got a response or failed,
+     * might be {@code null}.
+     * @param responseTimeoutMs The timeout in milliseconds how long each
+     * {@code add} operation might take before failing.
+     * @return The handles of the states in the iteration order of
+     * {@code states}.
+     */
+    @Override
+    public List<StateHandle> addStates(Collection<StateDefinition> states, BulkCallback callback, int responseTimeoutMs) {
+        List<StateRegistration> registrations = new ArrayList<>(states.size());
+        Set<String> paths = new HashSet<>();
+        for (StateDefinition definition : states) {
+            checkBulkPath(paths, definition.path);
+            if ((definition.callback != null) && (definition.asyncCallback != null)) {
+                throw new IllegalArgumentException("callback and asyncCallback of " + definition.path);
+            }
+            registrations.add(new StateRegistration(definition.path, definition.value, definition.setGroups, definition.fetchGroups,
+                    definition.callback, definition.asyncCallback, definition.stateSetTimeoutMs, createSerialExecutor(definition.callbackExecutor)));
+        }
+        checkBulk(responseTimeoutMs);
+
+        BulkRequest bulk = new BulkRequest(registrations.size(), callback);
+        List<StateHandle> handles = new ArrayList<>(registrations.size());
+        batcher.cork();
+        try {
+            for (StateRegistration state : registrations) {
+                registerState(state);
+                JetMethod add = new JetMethod(JetMethod.ADD, createAddStateParameters(state), bulk.createItem(state.path));
+                sendCorked(add, state.path, bulk, responseTimeoutMs);
+                handles.add(new StateHandle(this, state, gson));
+            }
+        } finally {
+            batcher.uncork();
+        }
+        bulk.completeIfEmpty();
+        return handles;
+    }
+
+    /**
+     * Adds many methods to jet at once, like
+     * {@link #addStates(Collection, BulkCallback, int)} does for states.
+     *
+     * @param methods The methods to add, each path at most once.
+     * @param callback Called once all requests got a response or failed,
+     * might be {@code null}.
+     * @param responseTimeoutMs The timeout in milliseconds how long each
+     * {@code add} operation might take before failing.
+     */
+    @Override
+    public void addMethods(Collection<MethodDefinition> methods, BulkCallback callback, int responseTimeoutMs) {
+        List<MethodRegistration> registrations = new ArrayList<>(methods.size());
+        Set<String> paths = new HashSet<>();
+        for (MethodDefinition definition : methods) {
+            checkBulkPath(paths, definition.path);
+            if ((definition.callback == null) == (definition.asyncCallback == null)) {
+                throw new IllegalArgumentException("either callback or asyncCallback of " + definition.path);
+            }
+            registrations.add(new MethodRegistration(definition.path, definition.callGroups, definition.fetchGroups,
+                    definition.callback, definition.asyncCallback, definition.methodCallTimeoutMs, createSerialExecutor(definition.callbackExecutor)));
+        }
+        checkBulk(responseTimeoutMs);
+
+        BulkRequest bulk = new BulkRequest(registrations.size(), callback);
+        batcher.cork();
+        try {
+            for (MethodRegistration method : registrations) {
+                registerMethod(method);
+                JetMethod add = new JetMethod(JetMethod.ADD, createAddMethodParameters(method), bulk.createItem(method.path));
+                sendCorked(add, method.path, bulk, responseTimeoutMs);
+            }
+        } finally {
+            batcher.uncork();
+        }
+        bulk.completeIfEmpty();
+    }
+
+    @Override
+    public void removeStates(Collection<String> paths, BulkCallback callback, int responseTimeoutMs) {
+        removeBulk(paths, true, callback, responseTimeoutMs);
+    }
+
+    @Override
+    public void removeMethods(Collection<String> paths, BulkCallback callback, int responseTimeoutMs) {
+        removeBulk(paths, false, callback, responseTimeoutMs);
+    }
+
+    private void removeBulk(Collection<String> paths, boolean removeStates, BulkCallback callback, int responseTimeoutMs) {
+        Set<String> checked = new HashSet<>();
+        for (String path : paths) {
+            checkBulkPath(checked, path);
+        }
+        checkBulk(responseTimeoutMs);
+
+        BulkRequest bulk = new BulkRequest(paths.size(), callback);
+        batcher.cork();
+        try {
+            for (String path : paths) {
+                if (removeStates) {
+                    unregisterState(path);
+                } else {
+                    unregisterMethod(path);
+                }
+                JsonObject parameters = new JsonObject();
+                parameters.addProperty("path", path);
+                sendCorked(new JetMethod(JetMethod.REMOVE, parameters, bulk.createItem(path)), path, bulk, responseTimeoutMs);
+            }
+        } finally {
+            batcher.uncork();
+        }
+        bulk.completeIfEmpty();
+    }
+
+    /**
+     * The results of a bulk operation are reported per path, so every path
+     * might occur only once.
+     */
+    private static void checkBulkPath(Set<String> paths, String path) {
+        if ((path == null) || (path.length() == 0)) {
+            throw new IllegalArgumentException("path");
+        }
+        if (!paths.add(path)) {
+            throw new IllegalArgumentException("duplicate path " + path);
+        }
+    }
+
+    private void checkBulk(int timeoutMs) {
+        if (timeoutMs < 0) {
+            throw new IllegalArgumentException("timeoutMs");
+        }
+
+        if (this.isClosed) {
+            throw new IllegalStateException("Can't call a method on a closed peer!");
+        }
+    }
+
+    /**
+     * Sends a request of a bulk operation while the batcher is corked. A
+     * request that doesn't fit into the send window is reported as failed
+     * to {@code bulk} instead of aborting the whole operation. Once sending
+     * threw, this and all following requests of {@code bulk} are reported
+     * as failed without sending them.
+     */
+    private void sendCorked(JetMethod method, String path, BulkRequest bulk, int timeoutMs) {
+        if (bulk.getSendFailure() != null) {
+            bulk.fail(path, bulk.getSendFailure());
+            return;
+        }
+
+        if ((window != null) && method.hasResponseCallback()) {
+            if (!window.tryAcquire()) {
+                /*
+                 * The responses that free the window can't arrive before the
+                 * corked requests are sent.
+                 */
+                batcher.flush();
+                try {
+                    window.acquire(timeoutMs);
+                } catch (RejectedExecutionException e) {
+                    bulk.fail(path, new JsonRpcException(JsonRpcException.INTERNAL_ERROR, e.getMessage()));
+                    return;
+                }
+            }
+            method.setInWindow(true);
+        }
+
+        try {
+            sendRequest(method, timeoutMs);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Can't send bulk request for " + path, e);
+            /*
+             * Nothing went out, so no response or timeout completed the
+             * request yet.
+             */
+            openRequests.remove(method.getRequestId(), method);
+            timeouts.cancel(method);
+            releaseWindow(method);
+            JsonRpcException failure = new JsonRpcException(JsonRpcException.INTERNAL_ERROR, String.valueOf(e.getMessage()));
+            bulk.sendFailed(failure);
+            bulk.fail(path, failure);
+        }
+    }
+
+    private void registerState(StateRegistration state) {
+        if (metrics != null) {
+            state.callbackMetrics = metrics.addState(state.path);
+        }
+        states.put(state.path, state);
+    }
+
+    private void unregisterState(String path) {
+        states.remove(path);
+        if (metrics != null) {
+            metrics.removeState(path);
+        }
+    }
+
+    private void registerMethod(MethodRegistration method) {
+        if (metrics != null) {
+            method.callbackMetrics = metrics.addMethod(method.path);
+        }
+        methods.put(method.path, method);
+    }
+
+    private void unregisterMethod(String path) {
+        methods.remove(path);
+        if (metrics != null) {
+            metrics.removeMethod(path);
+        }
+    }
+
     private void disconnect() {
         removeAllStates();
         removeAllMethods();
         removeAllFetches();
+        flush();
+        if (metrics != null) {
+            metrics.removeCallbacks();
+        }
 
+        this.connection.setConnectionListener(null);
         this.connection.deleteObserver(this);
         this.connection.disconnect();
     }
 
-    private void registerFetcher(int fetchId, FetchEventCallback callback) {
-        synchronized (openFetches) {
-            openFetches.put(fetchId, callback);
+    /**
+     * Sends a {@code change} request encoded by a {@link StateHandle}.
+     */
+    void sendChange(StateRegistration state, String message) {
+        if (this.isClosed) {
+            throw new IllegalStateException("Can't call a method on a closed peer!");
         }
-    }
 
-    private void unregisterFetcher(int fetchId) {
-        synchronized (openFetches) {
-            openFetches.remove(fetchId);
+        if (states.get(state.path) != state) {
+            throw new IllegalStateException("state " + state.path + " was removed");
         }
-    }
 
-    private void registerStateCallback(String path, StateCallback callback) {
-        synchronized (stateCallbacks) {
-            stateCallbacks.put(path, callback);
+        if (metrics != null) {
+            metrics.forMethod(JetMethod.CHANGE).sent();
         }
+        sendMessage(message);
     }
 
-    private void unregisterStateCallback(String path) {
-        synchronized (stateCallbacks) {
-            stateCallbacks.remove(path);
+    /**
+     * Sends the held back change of a {@link StateHandle} with the next
+     * publish tick.
+     */
+    void schedulePublish(StateHandle handle) {
+        pendingPublishes.add(handle);
+        if (!publishTickStarted.get() && publishTickStarted.compareAndSet(false, true)) {
+            try {
+                executor.scheduleAtFixedRate(new PublishTickTask(), publishTickMs, publishTickMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                LOGGER.log(Level.FINE, "Peer closed, not publishing", e);
+            }
         }
     }
 
-    private void registerMethodCallback(String path, MethodCallback callback) {
-        synchronized (methodCallbacks) {
-            methodCallbacks.put(path, callback);
-        }
+    private JetMethod createConfig(String peerName, ResponseCallback responseCallback) {
+        JsonObject parameters = new JsonObject();
+        parameters.addProperty("name", peerName);
+        return new JetMethod(JetMethod.CONFIG, parameters, responseCallback);
     }
 
-    private void unregisterMethodCallback(String path) {
-        synchronized (methodCallbacks) {
-            methodCallbacks.remove(path);
-        }
+    private JetMethod createAuthenticate(String user, String password, ResponseCallback responseCallback) {
+        JsonObject credentials = new JsonObject();
+        credentials.addProperty("user", user);
+        credentials.addProperty("password", password);
+        return new JetMethod(JetMethod.AUTHENTICATE, credentials, responseCallback);
     }
 
-    private void registerFetchId(FetchId fetchId) {
-        synchronized (allFetches) {
-            allFetches.add(fetchId);
+    private JsonObject createAddStateParameters(StateRegistration state) {
+        JsonObject parameters = new JsonObject();
+        parameters.addProperty("path", state.path);
+        parameters.add("value", state.getValue());
+        parameters.addProperty("timeout", state.stateSetTimeoutMs / 1000.0);
+        if (state.isFetchOnly()) {
+            parameters.addProperty("fetchOnly", true);
         }
-    }
 
-    private void unRegisterFetchId(FetchId id) {
-        synchronized (allFetches) {
-            allFetches.remove(id);
+        if ((state.setGroups != null) && (state.setGroups.length > 0) || ((state.fetchGroups != null) && (state.fetchGroups.length > 0))) {
+            JsonObject access = new JsonObject();
+            parameters.add("access", access);
+            access.add("setGroups", createJsonArray(state.setGroups));
+            access.add("fetchGroups", createJsonArray(state.fetchGroups));
         }
+        return parameters;
     }
 
-    private void removeIterator(final Iterator it) {
-        final Entry entry = (Entry) it.next();
-        final String path = (String) entry.getKey();
-        it.remove();
+    private JsonObject createAddMethodParameters(MethodRegistration method) {
+        JsonObject parameters = new JsonObject();
+        parameters.addProperty("path", method.path);
+        parameters.addProperty("timeout", method.methodCallTimeoutMs / 1000.0);
 
-        sendRemove(path, null, 0);
+        if ((method.callGroups != null) && (method.callGroups.length > 0) || ((method.fetchGroups != null) && (method.fetchGroups.length > 0))) {
+            JsonObject access = new JsonObject();
+            parameters.add("access", access);
+            access.add("callGroups", createJsonArray(method.callGroups));
+            access.add("fetchGroups", createJsonArray(method.fetchGroups));
+        }
+        return parameters;
     }
 
-    private void unfetchIterator(final Iterator it) {
-        final FetchId id = (FetchId) it.next();
-        it.remove();
+    private JsonObject createFetchParameters(FetchRegistration fetch) {
+        JsonObject parameters = new JsonObject();
+        JsonObject path = fillPath(fetch.matcher);
+        if (path != null) {
+            parameters.add("path", path);
+        }
+        parameters.addProperty("id", fetch.id.getId());
+        parameters.addProperty("caseInsensitive", fetch.matcher.caseInsensitive);
+        fillValue(parameters, fetch.matcher);
+        if (fetch.sort != null) {
+            parameters.add("sort", createSort(fetch.sort));
+        }
+        return parameters;
+    }
 
-        sendUnfetch(id, null, 0);
+    private static JsonObject createSort(FetchSort sort) {
+        JsonObject parameters = new JsonObject();
+        parameters.addProperty("from", sort.from);
+        parameters.addProperty("to", sort.to);
+        parameters.addProperty("descending", sort.descending);
+        if (sort.byValueField != null) {
+            JsonObject field = new JsonObject();
+            field.addProperty(sort.byValueField, sort.byValue);
+            parameters.add("byValueField", field);
+        } else if (sort.byValue != null) {
+            parameters.addProperty("byValue", sort.byValue);
+        } else {
+            parameters.addProperty("byPath", true);
+        }
+        return parameters;
     }
 
     private void sendUnfetch(final FetchId id, ResponseCallback responseCallback, int responseTimeoutMs) {
@@ -443,29 +905,48 @@ public class JetPeer implements Peer, Observer, Closeable {
             throw new IllegalArgumentException("timeoutMs");
         }
 
-        synchronized (this) {
-            if (this.isClosed) {
-                throw new IllegalStateException("Can't call a method on a closed peer!");
-            }
-            
-            if (method.hasResponseCallback()) {
-                ResponseTimeoutTask task;
-                task = new ResponseTimeoutTask(method);
-                synchronized (openRequests) {
-                    openRequests.put(method.getRequestId(), method);
-                    ScheduledFuture<Void> future;
-                    future = executor.schedule(task, timeoutMs, TimeUnit.MILLISECONDS);
-                    method.addFuture(future);
-                }
-            }
+        if (this.isClosed) {
+            throw new IllegalStateException("Can't call a method on a closed peer!");
+        }
 
-            JsonObject json = method.getJson();
-            connection.sendMessage(gson.toJson(json));
+        if ((window != null) && method.hasResponseCallback()) {
+            window.acquire(timeoutMs);
+            method.setInWindow(true);
         }
+
+        sendRequest(method, timeoutMs);
     }
 
-    private JsonObject fillPath(Matcher matcher) {
-        JsonObject path = new JsonObject();
+    /**
+     * Sends a request without taking a slot of the send window. Used to
+     * restore registrations, which must not be held back.
+     */
+    private void sendRequest(JetMethod method, int timeoutMs) {
+        final String message = gson.toJson(method.getJson());
+        method.startEvent(message.length());
+        if (metrics != null) {
+            method.sent(metrics.forMethod(method.getMethod()));
+        }
+        if (method.hasResponseCallback()) {
+            openRequests.put(method.getRequestId(), method);
+            timeouts.schedule(method, timeoutMs);
+        }
+
+        if (method.isControl()) {
+            lanes.sendControl(message);
+        } else {
+            sendMessage(message);
+        }
+    }
+
+    private void releaseWindow(JetMethod method) {
+        if (method.isInWindow()) {
+            window.release();
+        }
+    }
+
+    private JsonObject fillPath(Matcher matcher) {
+        JsonObject path = new JsonObject();
 
         if ((matcher.contains != null && !matcher.contains.isEmpty())) {
             path.addProperty("contains", matcher.contains);
@@ -504,178 +985,296 @@ public class JetPeer implements Peer, Observer, Closeable {
         }
     }
 
+    private static void fillValue(JsonObject parameters, Matcher matcher) {
+        if (matcher.value != null) {
+            parameters.add("value", createValueMatcher(matcher.value));
+        }
+
+        if ((matcher.valueField != null) && !matcher.valueField.isEmpty()) {
+            JsonObject fields = new JsonObject();
+            for (Map.Entry<String, ValueMatcher> entry : matcher.valueField.entrySet()) {
+                fields.add(entry.getKey(), createValueMatcher(entry.getValue()));
+            }
+            parameters.add("valueField", fields);
+        }
+    }
+
+    private static JsonObject createValueMatcher(ValueMatcher matcher) {
+        JsonObject value = new JsonObject();
+        if (matcher.equals != null) {
+            value.add("equals", matcher.equals);
+        }
+        if (matcher.equalsNot != null) {
+            value.add("equalsNot", matcher.equalsNot);
+        }
+        if (matcher.lessThan != null) {
+            value.addProperty("lessThan", matcher.lessThan);
+        }
+        if (matcher.greaterThan != null) {
+            value.addProperty("greaterThan", matcher.greaterThan);
+        }
+        if (matcher.isType != null) {
+            value.addProperty("isType", matcher.isType);
+        }
+        return value;
+    }
+
     @Override
     public void update(Observable observable, Object obj) {
+        final String message = (String) obj;
+        final JetFrameEvent event = JetEvents.startFrame();
+        boolean failed = false;
         try {
-            JsonElement element = parser.parse((String) obj);
-            if (element == null) {
-                return;
-            }
-
-            if (element.isJsonObject()) {
-                handleSingleJsonMessage((JsonObject) element);
-            } else if (element.isJsonArray()) {
-                JsonArray array = (JsonArray) element;
-                for (int i = 0; i < array.size(); i++) {
-                    JsonElement e = array.get(i);
-                    if (e.isJsonObject()) {
-                        handleSingleJsonMessage((JsonObject) e);
-                    }
-                }
-            }
-        } catch (JsonSyntaxException e) {
+            dispatcher.dispatch(message);
+        } catch (IOException | JsonParseException | IllegalStateException | NumberFormatException e) {
             /*
              * There is no error handling necessary in this case. If somebody sends us invalid JSON,
              * we just ignore the packet and go ahead.
              */
+            failed = true;
             LOGGER.log(Level.SEVERE, "Can't parse JSON!", e);
+        } finally {
+            if (event != null) {
+                event.finish(message.length(), failed);
+            }
         }
     }
 
-    private void handleSingleJsonMessage(JsonObject object) {
-        JsonPrimitive fetchId = getFetchId(object);
-        if (fetchId != null) {
-            handleFetch(fetchId.getAsInt(), object);
-            return;
-        }
+    private SerialExecutor createSerialExecutor(Executor executor) {
+        return new SerialExecutor((executor != null) ? executor : this.callbackExecutor);
+    }
 
-        if (isResponse(object)) {
-            handleResponse(object);
+    private void handleFetch(int fetchId, final JsonObject params) {
+        final FetchRegistration fetch = fetches.get(fetchId);
+        if (fetch == null) {
             return;
         }
 
-        handleStateOrMethodCallbacks(object);
+        if (fetch.callbacks.isInline()) {
+            callFetchCallback(fetch, params);
+        } else {
+            fetch.callbacks.execute(new Runnable() {
+                @Override
+                public void run() {
+                    callFetchCallback(fetch, params);
+                }
+            });
+        }
     }
 
-    private void handleFetch(int fetchId, JsonObject object) {
-        synchronized (openFetches) {
-            FetchEventCallback callback = openFetches.get(fetchId);
-            if (callback != null) {
-                JsonObject params = object.getAsJsonObject("params");
-                if (params != null) {
-                    callback.onFetchEvent(params);
-                }
+    /**
+     * Tells the fetches that their notifications stopped, behind the
+     * notifications already queued for them.
+     */
+    private void resetFetches() {
+        for (FetchRegistration fetch : fetches.values()) {
+            if (!(fetch.callback instanceof ResettableFetchCallback)) {
+                continue;
+            }
+
+            final ResettableFetchCallback callback = (ResettableFetchCallback) fetch.callback;
+            if (fetch.callbacks.isInline()) {
+                resetFetch(callback);
+            } else {
+                fetch.callbacks.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        resetFetch(callback);
+                    }
+                });
             }
         }
     }
 
-    private void handleResponse(JsonObject object) {
-        JsonPrimitive token = object.getAsJsonPrimitive("id");
-        int id = token.getAsInt();
-        synchronized (openRequests) {
-            JetMethod method = openRequests.get(id);
-            if (method == null) {
-                return;
+    private static void resetFetch(ResettableFetchCallback callback) {
+        try {
+            callback.onFetchReset();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Exception in fetch reset", e);
+        }
+    }
+
+    private static void callFetchCallback(FetchRegistration fetch, JsonObject params) {
+        final JetCallbackEvent event = JetEvents.startCallback();
+        final long start = startTimer(fetch.callbackMetrics);
+        try {
+            fetch.callback.onFetchEvent(params);
+        } finally {
+            stopTimer(fetch.callbackMetrics, start);
+            if (event != null) {
+                JsonElement path = params.get("path");
+                event.finish(JetCallbackEvent.FETCH, (path != null) ? path.getAsString() : null, null, fetch.id.getId());
             }
-            openRequests.remove(id);
-            method.getFuture().cancel(true);
-            method.callResponseCallback(true, object);
         }
     }
 
-    private JsonPrimitive getFetchId(JsonObject object) {
-        JsonPrimitive method = object.getAsJsonPrimitive("method");
-        if ((method != null) && (method.isNumber())) {
-            return method;
+    private static long startTimer(CallbackMetrics callbackMetrics) {
+        return (callbackMetrics != null) ? System.nanoTime() : 0;
+    }
+
+    private static void stopTimer(CallbackMetrics callbackMetrics, long start) {
+        if (callbackMetrics != null) {
+            callbackMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    private void handleResponse(int id, JsonObject object) {
+        JetMethod method = openRequests.remove(id);
+        if (method == null) {
+            return;
         }
 
-        return null;
+        timeouts.cancel(method);
+        releaseWindow(method);
+        final boolean error = object.has("error");
+        method.responded(error);
+        method.finishEvent(error, false);
+        completeRequest(method, true, object);
     }
 
-    private boolean isResponse(JsonObject object) {
-        JsonPrimitive id = object.getAsJsonPrimitive("id");
-        return (id != null) && (id.isNumber());
+    private void completeRequest(final JetMethod method, final boolean completed, final JsonObject response) {
+        if (callbackExecutor == null) {
+            method.callResponseCallback(completed, response);
+            return;
+        }
+
+        try {
+            callbackExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    method.callResponseCallback(completed, response);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.SEVERE, "Callback executor rejected response callback", e);
+        }
     }
 
-    private void handleStateOrMethodCallbacks(JsonObject object) {
+    private void handleStateOrMethodCallbacks(JsonPrimitive id, String path, JsonElement params) {
         try {
-            JsonPrimitive method = object.getAsJsonPrimitive("method");
-            if (method == null) {
+            if (path == null) {
                 throw new JsonRpcException(JsonRpcException.METHOD_NOT_FOUND, "no method given");
             }
 
-            String path = method.getAsString();
-            if ((path == null) || (path.length() == 0)) {
+            if (path.length() == 0) {
                 throw new JsonRpcException(JsonRpcException.METHOD_NOT_FOUND, "method is not a string or integer");
             }
 
-            boolean stateHandled = handleStateCallback(object, path);
-            if (!stateHandled) {
-                handleMethod(object, path);
+            StateRegistration state = states.get(path);
+            if (state != null) {
+                state.callbacks.execute(new StateSetTask(id, state, params));
+                return;
+            }
+
+            MethodRegistration method = methods.get(path);
+            if (method != null) {
+                method.callbacks.execute(new MethodCallTask(id, method, params));
             }
         } catch (JsonRpcException e) {
-            sendResponse(object, e.getJson());
+            sendError(id, e);
         }
     }
 
-    private void sendResponse(JsonObject request, JsonObject responseObject) {
-        JsonPrimitive id = request.getAsJsonPrimitive("id");
-        if ((id != null) && ((id.isString()) || (id.isNumber()))) {
+    private void sendResponse(JsonPrimitive id, JsonObject responseObject) {
+        if (id != null) {
             responseObject.add("id", id);
-            this.connection.sendMessage(gson.toJson(responseObject));
+            lanes.sendControl(gson.toJson(responseObject));
         }
     }
 
-    private boolean handleStateCallback(JsonObject object, String path) throws JsonRpcException {
-        boolean stateFound;
+    private void sendError(JsonPrimitive id, JsonRpcException e) {
+        JsonObject response = new JsonObject();
+        response.add("error", e.getJson());
+        sendResponse(id, response);
+    }
+
+    private void sendMessage(String message) {
+        batcher.send(message);
+    }
 
-        synchronized (stateCallbacks) {
-            stateFound = stateCallbacks.containsKey(path);
+    private void handleStateSet(JsonPrimitive id, StateRegistration state, JsonElement params) throws JsonRpcException {
+        if (state.isFetchOnly()) {
+            throw new JsonRpcException(JsonRpcException.INVALID_REQUEST, "state is readonly");
         }
 
-        if (stateFound) {
-            StateCallback callback;
-            synchronized (stateCallbacks) {
-                callback = stateCallbacks.get(path);
-            }
-            if (callback == null) {
-                throw new JsonRpcException(JsonRpcException.INVALID_REQUEST, "state is readonly");
-            }
+        if ((params == null) || !params.isJsonObject()) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "no parameters in json");
+        }
 
-            JsonObject parameters = object.getAsJsonObject("params");
-            if (parameters == null) {
-                throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "no parameters in json");
-            }
+        JsonElement value = params.getAsJsonObject().get("value");
+        if (value == null) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "no value in parameter");
+        }
 
-            JsonElement value = parameters.get("value");
-            if (value == null) {
-                throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "no value in parameter");
-            }
+        if (state.asyncCallback != null) {
+            PendingCallback pending = new PendingCallback(id, state, null);
+            pending.await(state.asyncCallback.onStateSet(state.path, value), state.stateSetTimeoutMs);
+            return;
+        }
 
-            JsonElement notifyValue = callback.onStateSet(path, value);
-            if (notifyValue != null) {
-                this.change(path, notifyValue, null, 0);
+        final JsonElement notifyValue;
+        final JetCallbackEvent event = JetEvents.startCallback();
+        final long start = startTimer(state.callbackMetrics);
+        try {
+            notifyValue = state.callback.onStateSet(state.path, value);
+        } finally {
+            stopTimer(state.callbackMetrics, start);
+            if (event != null) {
+                event.finish(JetCallbackEvent.STATE, state.path, id, 0);
             }
+        }
+        completeStateSet(id, state, notifyValue);
+    }
 
-            JsonObject result = new JsonObject();
-            result.addProperty("result", true);
-            sendResponse(object, result);
-            return true;
+    private void completeStateSet(JsonPrimitive id, StateRegistration state, JsonElement notifyValue) {
+        JsonObject result = new JsonObject();
+        result.addProperty("result", true);
 
-        } else {
-            return false;
+        if ((notifyValue != null) && (states.get(state.path) == state)) {
+            this.change(state.path, notifyValue, null, 0);
+            /*
+             * The change takes the bulk lane. The response must not overtake
+             * it, otherwise the setter might read the old value right after
+             * the set succeeded.
+             */
+            if (id != null) {
+                result.add("id", id);
+                sendMessage(gson.toJson(result));
+            }
+            return;
         }
+        sendResponse(id, result);
     }
 
-    private void handleMethod(JsonObject object, String path) throws JsonRpcException {
-        MethodCallback callback;
+    private void handleMethodCall(JsonPrimitive id, MethodRegistration method, JsonElement parameters) throws JsonRpcException {
+        if (parameters == null) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "no parameters in json");
+        }
 
-        synchronized (methodCallbacks) {
-            callback = methodCallbacks.get(path);
+        if (method.asyncCallback != null) {
+            PendingCallback pending = new PendingCallback(id, null, method);
+            pending.await(method.asyncCallback.onMethodCalled(method.path, parameters), method.methodCallTimeoutMs);
+            return;
         }
 
-        if (callback != null) {
-            JsonElement parameters = object.get("params");
-            if (parameters == null) {
-                throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "no parameters in json");
+        final JsonElement result;
+        final JetCallbackEvent event = JetEvents.startCallback();
+        final long start = startTimer(method.callbackMetrics);
+        try {
+            result = method.callback.onMethodCalled(method.path, parameters);
+        } finally {
+            stopTimer(method.callbackMetrics, start);
+            if (event != null) {
+                event.finish(JetCallbackEvent.METHOD, method.path, id, 0);
             }
-
-            JsonElement result = callback.onMethodCalled(path, parameters);
-
-            JsonObject resultObject = new JsonObject();
-            resultObject.add("result", result);
-            sendResponse(object, resultObject);
         }
+        completeMethodCall(id, result);
+    }
+
+    private void completeMethodCall(JsonPrimitive id, JsonElement result) {
+        JsonObject resultObject = new JsonObject();
+        resultObject.add("result", result);
+        sendResponse(id, resultObject);
     }
 
     private JsonElement createJsonArray(String[] group) {
@@ -687,57 +1286,418 @@ public class JetPeer implements Peer, Observer, Closeable {
     }
 
     private void removeAllStates() {
-        synchronized (stateCallbacks) {
-            final Iterator it = stateCallbacks.entrySet().iterator();
-            while (it.hasNext()) {
-                removeIterator(it);
+        for (String path : states.keySet()) {
+            if (states.remove(path) != null) {
+                sendRemove(path, null, 0);
             }
         }
     }
 
     private void removeAllMethods() {
-        synchronized (methodCallbacks) {
-            final Iterator it = methodCallbacks.entrySet().iterator();
-            while (it.hasNext()) {
-                removeIterator(it);
+        for (String path : methods.keySet()) {
+            if (methods.remove(path) != null) {
+                sendRemove(path, null, 0);
             }
         }
     }
 
     private void removeAllFetches() {
-        synchronized (allFetches) {
-            final Iterator<FetchId> it = allFetches.iterator();
-            while (it.hasNext()) {
-                unfetchIterator(it);
+        for (FetchRegistration fetch : fetches.values()) {
+            if (fetches.remove(fetch.id.getId(), fetch)) {
+                sendUnfetch(fetch.id, null, 0);
+            }
+        }
+    }
+
+    /**
+     * Restores the session after a reconnect. All requests are corked, so
+     * they leave in as few frames as possible.
+     */
+    private void restoreRegistrations() {
+        final int timeoutMs = reconnectPolicy.responseTimeoutMs;
+        final ResponseCallback callback = new RestoreResponseCallback();
+
+        batcher.cork();
+        try {
+            if (peerName != null) {
+                this.sendRequest(createConfig(peerName, callback), timeoutMs);
+            }
+            if (user != null) {
+                this.sendRequest(createAuthenticate(user, password, callback), timeoutMs);
+            }
+            for (StateRegistration state : states.values()) {
+                this.sendRequest(new JetMethod(JetMethod.ADD, createAddStateParameters(state), callback), timeoutMs);
+            }
+            for (MethodRegistration method : methods.values()) {
+                this.sendRequest(new JetMethod(JetMethod.ADD, createAddMethodParameters(method), callback), timeoutMs);
+            }
+            for (FetchRegistration fetch : fetches.values()) {
+                this.sendRequest(new JetMethod(JetMethod.FETCH, createFetchParameters(fetch), callback), timeoutMs);
+            }
+        } finally {
+            batcher.uncork();
+        }
+    }
+
+    private void scheduleReconnect(int attempt) {
+        if (isClosed) {
+            return;
+        }
+
+        if ((reconnectPolicy.maxAttempts > 0) && (attempt >= reconnectPolicy.maxAttempts)) {
+            LOGGER.log(Level.SEVERE, "Giving up reconnecting after {0} attempts!", attempt);
+            return;
+        }
+
+        try {
+            executor.schedule(new ReconnectTask(attempt), reconnectPolicy.getDelayMs(attempt), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.FINE, "Peer closed, not reconnecting", e);
+        }
+    }
+
+    private class MessageHandler implements StreamingDispatcher.Handler {
+
+        @Override
+        public boolean hasFetch(int fetchId) {
+            return fetches.containsKey(fetchId);
+        }
+
+        @Override
+        public boolean hasRequest(int requestId) {
+            return openRequests.containsKey(requestId);
+        }
+
+        @Override
+        public boolean hasCallback(String path) {
+            return states.containsKey(path) || methods.containsKey(path);
+        }
+
+        @Override
+        public void onFetch(int fetchId, JsonObject params) {
+            handleFetch(fetchId, params);
+        }
+
+        @Override
+        public void onResponse(int requestId, JsonObject response) {
+            handleResponse(requestId, response);
+        }
+
+        @Override
+        public void onRequest(JsonPrimitive id, String path, JsonElement params) {
+            handleStateOrMethodCallbacks(id, path, params);
+        }
+    }
+
+    private class ConnectionHandler implements JetConnection.ConnectionListener {
+
+        @Override
+        public void disconnected() {
+            lanes.clear();
+            resetFetches();
+            if ((reconnectPolicy != null) && !isClosed) {
+                LOGGER.log(Level.WARNING, "Connection lost, reconnecting");
+                scheduleReconnect(0);
+            }
+        }
+
+        @Override
+        public void sent() {
+            lanes.sent();
+            if (window != null) {
+                window.sent();
+            }
+        }
+    }
+
+    private class ReconnectTask implements Runnable, ConnectionCompleted {
+
+        private final int attempt;
+
+        ReconnectTask(int attempt) {
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void run() {
+            if (!isClosed) {
+                connection.connect(this, reconnectPolicy.connectTimeoutMs);
+            }
+        }
+
+        @Override
+        public void completed(boolean success) {
+            if (!success) {
+                scheduleReconnect(attempt + 1);
+                return;
+            }
+
+            LOGGER.log(Level.INFO, "Reconnected after {0} attempts", attempt + 1);
+            try {
+                restoreRegistrations();
+            } catch (IllegalStateException e) {
+                LOGGER.log(Level.FINE, "Peer closed while restoring registrations", e);
             }
         }
     }
 
-    private class ResponseTimeoutTask implements Callable<Void> {
+    private static class RestoreResponseCallback implements ResponseCallback {
 
-        private final JetMethod method;
+        @Override
+        public void onResponse(boolean completed, JsonObject response) {
+            if (!completed || response.has("error")) {
+                LOGGER.log(Level.WARNING, "Restoring a registration after reconnect failed: {0}", response);
+            }
+        }
+    }
 
-        private ResponseTimeoutTask(JetMethod method) {
+    /**
+     * Sends the held back changes of all states in a single frame.
+     */
+    private class PublishTickTask implements Runnable {
+
+        @Override
+        public void run() {
+            if (pendingPublishes.isEmpty()) {
+                return;
+            }
+
+            final long now = System.nanoTime();
+            final List<StateHandle> notDue = new ArrayList<>();
+            try {
+                batcher.cork();
+                try {
+                    int count = pendingPublishes.size();
+                    StateHandle handle;
+                    while ((count-- > 0) && ((handle = pendingPublishes.poll()) != null)) {
+                        try {
+                            if (!handle.publishPending(now)) {
+                                notDue.add(handle);
+                            }
+                        } catch (IllegalStateException e) {
+                            LOGGER.log(Level.FINE, "Dropping change of " + handle.getPath(), e);
+                        }
+                    }
+                } finally {
+                    batcher.uncork();
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Can't publish changes", e);
+            }
+            pendingPublishes.addAll(notDue);
+        }
+    }
+
+    /**
+     * Base of the tasks running state and method callbacks, turns their
+     * exceptions into error responses.
+     */
+    private abstract class RequestTask implements Runnable {
+
+        final JsonPrimitive id;
+        final JsonElement params;
+
+        RequestTask(JsonPrimitive id, JsonElement params) {
+            this.id = id;
+            this.params = params;
+        }
+
+        abstract void handle() throws JsonRpcException;
+
+        @Override
+        public void run() {
+            try {
+                handle();
+            } catch (JsonRpcException e) {
+                sendError(id, e);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Exception in callback", e);
+                sendError(id, new JsonRpcException(JsonRpcException.INTERNAL_ERROR, "callback failed"));
+            }
+        }
+    }
+
+    private class StateSetTask extends RequestTask {
+
+        private final StateRegistration state;
+
+        StateSetTask(JsonPrimitive id, StateRegistration state, JsonElement params) {
+            super(id, params);
+            this.state = state;
+        }
+
+        @Override
+        void handle() throws JsonRpcException {
+            handleStateSet(id, state, params);
+        }
+    }
+
+    private class MethodCallTask extends RequestTask {
+
+        private final MethodRegistration method;
+
+        MethodCallTask(JsonPrimitive id, MethodRegistration method, JsonElement params) {
+            super(id, params);
             this.method = method;
         }
 
         @Override
-        public Void call() throws Exception {
-            synchronized (openRequests) {
-                openRequests.remove(method.getRequestId());
+        void handle() throws JsonRpcException {
+            handleMethodCall(id, method, params);
+        }
+    }
+
+    /**
+     * A {@code set} or call answered by an asynchronous callback. Whatever
+     * comes first, the completion of the stage or the expiry of the timeout,
+     * sends the response.
+     */
+    private class PendingCallback extends TimingWheel.Timeout implements BiConsumer<JsonElement, Throwable> {
+
+        private final JsonPrimitive id;
+        private final StateRegistration state;
+        private final MethodRegistration method;
+        private final AtomicBoolean answered = new AtomicBoolean();
+        private final CallbackMetrics callbackMetrics;
+        private final long start;
+        private final JetCallbackEvent event;
+
+        PendingCallback(JsonPrimitive id, StateRegistration state, MethodRegistration method) {
+            this.id = id;
+            this.state = state;
+            this.method = method;
+            this.callbackMetrics = (state != null) ? state.callbackMetrics : method.callbackMetrics;
+            this.start = startTimer(callbackMetrics);
+            this.event = JetEvents.startCallback();
+        }
+
+        private void finish() {
+            stopTimer(callbackMetrics, start);
+            if (event == null) {
+                return;
+            }
+            if (state != null) {
+                event.finish(JetCallbackEvent.STATE, state.path, id, 0);
+            } else {
+                event.finish(JetCallbackEvent.METHOD, method.path, id, 0);
+            }
+        }
+
+        void await(CompletionStage<JsonElement> stage, int timeoutMs) {
+            if (stage == null) {
+                throw new NullPointerException("callback returned no completion stage");
+            }
+
+            if (timeoutMs > 0) {
+                timeouts.schedule(this, timeoutMs);
+            }
+            stage.whenComplete(this);
+        }
+
+        @Override
+        public void accept(JsonElement value, Throwable failure) {
+            if (!answered.compareAndSet(false, true)) {
+                return;
+            }
+
+            timeouts.cancel(this);
+            finish();
+            try {
+                if (failure != null) {
+                    sendError(id, toJsonRpcException(failure));
+                } else if (state != null) {
+                    completeStateSet(id, state, value);
+                } else {
+                    completeMethodCall(id, value);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Can't send response", e);
+            }
+        }
+
+        void expired() {
+            if (answered.compareAndSet(false, true)) {
+                finish();
+                sendError(id, new JsonRpcException(JsonRpcException.RESPONSE_TIMEOUT, "timeout while waiting for callback"));
+            }
+        }
+
+        private JsonRpcException toJsonRpcException(Throwable failure) {
+            Throwable cause = failure;
+            while (((cause instanceof CompletionException) || (cause instanceof ExecutionException)) && (cause.getCause() != null)) {
+                cause = cause.getCause();
+            }
+
+            if (cause instanceof JsonRpcException) {
+                return (JsonRpcException) cause;
+            }
+            LOGGER.log(Level.SEVERE, "Exception in callback", cause);
+            return new JsonRpcException(JsonRpcException.INTERNAL_ERROR, "callback failed");
+        }
+    }
+
+    private class MetricsExportTask implements Runnable {
+
+        private final List<MetricsExporter> exporters;
+
+        MetricsExportTask(List<MetricsExporter> exporters) {
+            this.exporters = exporters;
+        }
+
+        @Override
+        public void run() {
+            for (MetricsExporter exporter : exporters) {
+                try {
+                    exporter.export(metrics);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.SEVERE, "Metrics exporter failed", e);
+                }
             }
+        }
+    }
+
+    private class TimeoutTickTask implements Runnable {
+
+        @Override
+        public void run() {
+            /*
+             * An exception escaping this task would silently cancel it and no
+             * request would ever time out again.
+             */
+            try {
+                timeouts.advance();
+            } catch (Throwable e) {
+                LOGGER.log(Level.SEVERE, "Can't expire timeouts", e);
+            }
+        }
+    }
+
+    private class ResponseTimeoutHandler implements TimingWheel.ExpiryHandler {
+
+        @Override
+        public void expired(TimingWheel.Timeout timeout) {
+            if (timeout instanceof PendingCallback) {
+                ((PendingCallback) timeout).expired();
+                return;
+            }
+
+            final JetMethod method = (JetMethod) timeout;
+            if (!openRequests.remove(method.getRequestId(), method)) {
+                return;
+            }
+            releaseWindow(method);
+            method.timedOut();
+            method.finishEvent(true, true);
 
             JsonObject response = new JsonObject();
             response.addProperty("id", method.getRequestId());
             response.addProperty("jsonrpc", "2.0");
 
             JsonObject error = new JsonObject();
-            error.addProperty("code", -32100);
+            error.addProperty("code", JsonRpcException.RESPONSE_TIMEOUT);
             error.addProperty("message", "timeout while waiting for response");
             response.add("error", error);
-            method.callResponseCallback(false, response);
-
-            return null;
+            completeRequest(method, false, response);
         }
     }
 }
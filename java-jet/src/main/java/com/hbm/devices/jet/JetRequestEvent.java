@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event spanning a request from sending it until its
+ * response arrived or it timed out.
+ */
+@Name("com.hbm.devices.jet.Request")
+@Label("Jet Request")
+@Category("Jet")
+@Description("A JSON-RPC request sent to the jet daemon")
+class JetRequestEvent extends jdk.jfr.Event {
+
+    private static final EventType TYPE = EventType.getEventType(JetRequestEvent.class);
+
+    @Label("Method")
+    String method;
+
+    @Label("Path")
+    String path;
+
+    @Label("Request Id")
+    int requestId;
+
+    @Label("Request Length")
+    @Description("Length of the request in UTF-16 chars, not encoded bytes")
+    long requestChars;
+
+    @Label("Error")
+    boolean error;
+
+    @Label("Timed Out")
+    boolean timedOut;
+
+    /**
+     * @return A started event, {@code null} if the event is disabled. Only
+     * called through {@link JetEvents#startRequest()}.
+     */
+    static JetRequestEvent start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        final JetRequestEvent event = new JetRequestEvent();
+        event.begin();
+        return event;
+    }
+}
@@ -23,6 +23,7 @@
  */
 package com.hbm.devices.jet;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 public class JsonRpcException extends Exception {
@@ -31,16 +32,53 @@ public class JsonRpcException extends Exception {
     public static final int METHOD_NOT_FOUND = -32601;
     public static final int INVALID_PARAMS = -32602;
     public static final int INTERNAL_ERROR = -32603;
+    public static final int RESPONSE_TIMEOUT = -32100;
     
+    private final int code;
     private JsonObject error;
     
     public JsonRpcException(int code, String message) {
+        super(message);
+        this.code = code;
         this.error = new JsonObject();
         this.error.addProperty("code", code);
         this.error.addProperty("message", message);
     }
 
+    public int getCode() {
+        return code;
+    }
+
     JsonObject getJson() {
         return error;
     }
+
+    /**
+     * Creates an exception from the {@code error} member of a JSON-RPC
+     * response.
+     *
+     * @param error The error object of the response, might be {@code null}.
+     * @return A {@link ResponseTimeoutException} if the error signals a
+     * timeout, a {@code JsonRpcException} otherwise.
+     */
+    static JsonRpcException fromError(JsonElement error) {
+        int code = INTERNAL_ERROR;
+        String message = "request failed";
+        if ((error != null) && error.isJsonObject()) {
+            JsonObject object = error.getAsJsonObject();
+            JsonElement codeElement = object.get("code");
+            if ((codeElement != null) && codeElement.isJsonPrimitive() && codeElement.getAsJsonPrimitive().isNumber()) {
+                code = codeElement.getAsInt();
+            }
+            JsonElement messageElement = object.get("message");
+            if ((messageElement != null) && messageElement.isJsonPrimitive()) {
+                message = messageElement.getAsString();
+            }
+        }
+
+        if (code == RESPONSE_TIMEOUT) {
+            return new ResponseTimeoutException(message);
+        }
+        return new JsonRpcException(code, message);
+    }
 }
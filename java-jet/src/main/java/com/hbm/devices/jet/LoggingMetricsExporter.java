@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes a summary of the metrics to the jet logger.
+ *
+ * Request and connection metrics are logged with level {@code INFO}, the
+ * metrics of every single callback with level {@code FINE}.
+ */
+public class LoggingMetricsExporter implements MetricsExporter {
+
+    private static final Logger LOGGER = Logger.getLogger(JetConstants.LOGGER_NAME);
+
+    @Override
+    public void export(PeerMetrics metrics) {
+        if (LOGGER.isLoggable(Level.INFO)) {
+            ConnectionMetrics connection = metrics.getConnectionMetrics();
+            LOGGER.log(Level.INFO, String.format("jet: %d requests in flight, sent %d frames/%d bytes, received %d frames/%d bytes",
+                    metrics.getInFlightRequests(), connection.getFramesSent(), connection.getBytesSent(),
+                    connection.getFramesReceived(), connection.getBytesReceived()));
+
+            for (RequestMetrics request : metrics.getRequestMetrics()) {
+                LatencyHistogram latency = request.getLatency();
+                LOGGER.log(Level.INFO, String.format("jet %s: %d requests, %d errors, %d timeouts, latency p50 %s, p99 %s, p99.9 %s, max %s",
+                        request.getMethod(), request.getRequests(), request.getErrors(), request.getTimeouts(),
+                        format(latency.getValueAtPercentile(50.0)), format(latency.getValueAtPercentile(99.0)),
+                        format(latency.getValueAtPercentile(99.9)), format(latency.getMaxNanos())));
+            }
+        }
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            logCallbacks("state", metrics.getStateCallbackMetrics());
+            logCallbacks("method", metrics.getMethodCallbackMetrics());
+            logCallbacks("fetch", metrics.getFetchCallbackMetrics());
+        }
+    }
+
+    private static void logCallbacks(String kind, Map<?, CallbackMetrics> callbacks) {
+        for (Map.Entry<?, CallbackMetrics> entry : callbacks.entrySet()) {
+            CallbackMetrics callback = entry.getValue();
+            if (callback.getCount() > 0) {
+                LOGGER.log(Level.FINE, String.format("jet %s %s: %d callbacks, mean %s, max %s",
+                        kind, entry.getKey(), callback.getCount(),
+                        format((long) callback.getMeanNanos()), format(callback.getMaxNanos())));
+            }
+        }
+    }
+
+    private static String format(long nanos) {
+        if (nanos < 1000L) {
+            return nanos + " ns";
+        } else if (nanos < 1000000L) {
+            return String.format("%.1f us", nanos / 1e3);
+        } else {
+            return String.format("%.2f ms", nanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link JetConnection} to an {@link EmbeddedJetDaemon} in the same
+ * process.
+ *
+ * Outgoing messages are handed to the daemon on the calling thread. Messages
+ * from the daemon are queued and delivered to the peer by a dedicated
+ * delivery thread per connection, just like a network connection delivers
+ * them on its reader thread. Each {@link JetPeer} needs its own connection.
+ */
+public class LoopbackJetConnection extends JetConnection {
+
+    private static final Logger LOGGER = Logger.getLogger(JetConstants.LOGGER_NAME);
+    private static final AtomicInteger CONNECTION_COUNTER = new AtomicInteger();
+
+    /*
+     * Compared by identity, so it can't be confused with a message.
+     */
+    private static final String END_OF_DELIVERY = new String("end of delivery");
+
+    private final EmbeddedJetDaemon daemon;
+    private final String name;
+
+    private volatile BlockingQueue<String> deliveryQueue;
+    private volatile boolean connected;
+
+    public LoopbackJetConnection(EmbeddedJetDaemon daemon) {
+        if (daemon == null) {
+            throw new NullPointerException("daemon");
+        }
+        this.daemon = daemon;
+        this.name = "jet-loopback-" + CONNECTION_COUNTER.incrementAndGet();
+    }
+
+    @Override
+    synchronized void connect(ConnectionCompleted completed, int timeoutMs) {
+        if (connected) {
+            completed.completed(true);
+            return;
+        }
+
+        final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+        if (!daemon.attach(this)) {
+            LOGGER.log(Level.SEVERE, "Can't connect to closed embedded daemon");
+            completed.completed(false);
+            return;
+        }
+
+        deliveryQueue = queue;
+        connected = true;
+        Thread delivery = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                deliverMessages(queue);
+            }
+        }, name);
+        delivery.setDaemon(true);
+        delivery.start();
+        completed.completed(true);
+    }
+
+    @Override
+    void disconnect() {
+        if (close()) {
+            daemon.detach(this);
+        }
+    }
+
+    @Override
+    boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    void sendMessage(String message) {
+        if (!connected) {
+            throw new IllegalStateException("not connected");
+        }
+        countSent(message.length());
+        daemon.receive(this, message);
+    }
+
+    /**
+     * Queues a message from the daemon for delivery to the peer.
+     */
+    void deliver(String message) {
+        BlockingQueue<String> queue = deliveryQueue;
+        if (connected && (queue != null)) {
+            queue.add(message);
+        }
+    }
+
+    /**
+     * Ends the delivery thread after all queued messages were delivered.
+     *
+     * @return {@code true} if the connection was connected.
+     */
+    synchronized boolean close() {
+        if (!connected) {
+            return false;
+        }
+
+        connected = false;
+        deliveryQueue.add(END_OF_DELIVERY);
+        deliveryQueue = null;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private void deliverMessages(BlockingQueue<String> queue) {
+        try {
+            while (true) {
+                String message = queue.take();
+                if (message == END_OF_DELIVERY) {
+                    break;
+                }
+                countReceived(message.length());
+                try {
+                    setChanged();
+                    notifyObservers(message);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.SEVERE, "Exception while delivering message on " + name, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            notifyDisconnected();
+        }
+    }
+}
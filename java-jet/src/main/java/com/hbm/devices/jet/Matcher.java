@@ -23,6 +23,8 @@
  */
 package com.hbm.devices.jet;
 
+import java.util.Map;
+
 public class Matcher {
 
     public String contains;
@@ -32,4 +34,15 @@ public class Matcher {
     public String equals;
     public String equalsNot;
     public boolean caseInsensitive;
+
+    /**
+     * Predicates on the value of matched states, evaluated by the daemon.
+     */
+    public ValueMatcher value;
+
+    /**
+     * Predicates on fields of object values, keyed by the name of the field.
+     * Nested fields are separated by dots.
+     */
+    public Map<String, ValueMatcher> valueField;
 }
@@ -0,0 +1,491 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds all matchers out of many that match a path.
+ *
+ * Every matcher is indexed by its most selective positive constraint, its
+ * anchor: {@code equals} in a hash map, {@code startsWith} in a prefix trie,
+ * {@code endsWith} in a trie of reversed suffixes and the longest
+ * {@code contains} or {@code containsAllOf} part in an Aho-Corasick
+ * automaton. A lookup walks the path once through each structure and only
+ * evaluates the remaining constraints of matchers whose anchor was hit.
+ * Matchers without a positive constraint are evaluated on every lookup.
+ *
+ * Case insensitive matchers live in a separate set of structures that is
+ * searched with the folded path, so every path is folded at most once.
+ *
+ * Not thread safe.
+ */
+class MatcherIndex<T> {
+
+    private final Side caseSensitive;
+    private final Side caseInsensitive;
+    private final Map<T, Entry<T>> entries;
+    private int stamp;
+
+    MatcherIndex() {
+        this.caseSensitive = new Side();
+        this.caseInsensitive = new Side();
+        this.entries = new IdentityHashMap<>();
+    }
+
+    void add(Matcher matcher, T value) {
+        add(new PathMatcher(matcher), value);
+    }
+
+    void add(PathMatcher matcher, T value) {
+        if (entries.containsKey(value)) {
+            throw new IllegalArgumentException("value already indexed");
+        }
+
+        Entry<T> entry = new Entry<>(matcher, value);
+        entries.put(value, entry);
+        side(matcher).add(entry);
+    }
+
+    boolean remove(T value) {
+        Entry<T> entry = entries.remove(value);
+        if (entry == null) {
+            return false;
+        }
+        side(entry.matcher).remove(entry);
+        return true;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Adds the values of all matchers matching {@code path} to
+     * {@code result}. Each value is added at most once.
+     */
+    void match(String path, List<? super T> result) {
+        if (++stamp == 0) {
+            for (Entry<T> entry : entries.values()) {
+                entry.stamp = 0;
+            }
+            stamp = 1;
+        }
+
+        if (!caseSensitive.isEmpty()) {
+            caseSensitive.match(path, result);
+        }
+        if (!caseInsensitive.isEmpty()) {
+            caseInsensitive.match(PathMatcher.fold(path), result);
+        }
+    }
+
+    private Side side(PathMatcher matcher) {
+        return matcher.caseInsensitive ? caseInsensitive : caseSensitive;
+    }
+
+    private static final class Entry<T> {
+
+        private static final int UNANCHORED = 0;
+        private static final int EQUALS = 1;
+        private static final int PREFIX = 2;
+        private static final int SUFFIX = 3;
+        private static final int SUBSTRING = 4;
+
+        final PathMatcher matcher;
+        final T value;
+        final int anchorKind;
+        final String anchor;
+        int stamp;
+
+        Entry(PathMatcher matcher, T value) {
+            this.matcher = matcher;
+            this.value = value;
+
+            int kind = UNANCHORED;
+            String best = null;
+            if (matcher.equals != null) {
+                kind = EQUALS;
+                best = matcher.equals;
+            } else {
+                if (matcher.startsWith != null) {
+                    kind = PREFIX;
+                    best = matcher.startsWith;
+                }
+                if ((matcher.endsWith != null) && ((best == null) || (matcher.endsWith.length() > best.length()))) {
+                    kind = SUFFIX;
+                    best = matcher.endsWith;
+                }
+                if ((matcher.contains != null) && ((best == null) || (matcher.contains.length() > best.length()))) {
+                    kind = SUBSTRING;
+                    best = matcher.contains;
+                }
+                if (matcher.containsAllOf != null) {
+                    for (String part : matcher.containsAllOf) {
+                        if ((best == null) || (part.length() > best.length())) {
+                            kind = SUBSTRING;
+                            best = part;
+                        }
+                    }
+                }
+            }
+            this.anchorKind = kind;
+            this.anchor = best;
+        }
+    }
+
+    private final class Side {
+
+        private final Map<String, List<Entry<T>>> equals;
+        private final TrieNode<T> prefixes;
+        private final TrieNode<T> suffixes;
+        private final Map<String, List<Entry<T>>> substrings;
+        private final List<Entry<T>> unanchored;
+        private AhoCorasick<T> automaton;
+        private int size;
+
+        Side() {
+            this.equals = new HashMap<>();
+            this.prefixes = new TrieNode<>();
+            this.suffixes = new TrieNode<>();
+            this.substrings = new HashMap<>();
+            this.unanchored = new ArrayList<>();
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void add(Entry<T> entry) {
+            switch (entry.anchorKind) {
+                case Entry.EQUALS:
+                    equals.computeIfAbsent(entry.anchor, k -> new ArrayList<>()).add(entry);
+                    break;
+                case Entry.PREFIX:
+                    prefixes.insert(entry.anchor, false).entries.add(entry);
+                    break;
+                case Entry.SUFFIX:
+                    suffixes.insert(entry.anchor, true).entries.add(entry);
+                    break;
+                case Entry.SUBSTRING:
+                    substrings.computeIfAbsent(entry.anchor, k -> new ArrayList<>()).add(entry);
+                    automaton = null;
+                    break;
+                default:
+                    unanchored.add(entry);
+                    break;
+            }
+            size++;
+        }
+
+        void remove(Entry<T> entry) {
+            switch (entry.anchorKind) {
+                case Entry.EQUALS:
+                    removeFromMap(equals, entry);
+                    break;
+                case Entry.PREFIX:
+                    prefixes.remove(entry.anchor, false, entry);
+                    break;
+                case Entry.SUFFIX:
+                    suffixes.remove(entry.anchor, true, entry);
+                    break;
+                case Entry.SUBSTRING:
+                    removeFromMap(substrings, entry);
+                    automaton = null;
+                    break;
+                default:
+                    unanchored.remove(entry);
+                    break;
+            }
+            size--;
+        }
+
+        void match(String path, List<? super T> result) {
+            List<Entry<T>> exact = equals.get(path);
+            if (exact != null) {
+                check(exact, path, result);
+            }
+
+            TrieNode<T> node = prefixes;
+            for (int i = 0; (node != null) && (i <= path.length()); i++) {
+                check(node.entries, path, result);
+                node = (i < path.length()) ? node.child(path.charAt(i)) : null;
+            }
+
+            node = suffixes;
+            for (int i = path.length(); (node != null) && (i >= 0); i--) {
+                check(node.entries, path, result);
+                node = (i > 0) ? node.child(path.charAt(i - 1)) : null;
+            }
+
+            if (!substrings.isEmpty()) {
+                if (automaton == null) {
+                    automaton = new AhoCorasick<>(substrings);
+                }
+                AhoCorasick.Node<T> state = automaton.root;
+                for (int i = 0; i < path.length(); i++) {
+                    state = automaton.next(state, path.charAt(i));
+                    for (AhoCorasick.Node<T> out = state.output; out != null; out = out.nextOutput) {
+                        check(out.entries, path, result);
+                    }
+                }
+            }
+
+            check(unanchored, path, result);
+        }
+
+        private void check(List<Entry<T>> candidates, String path, List<? super T> result) {
+            for (int i = 0; i < candidates.size(); i++) {
+                Entry<T> entry = candidates.get(i);
+                if (entry.stamp != stamp) {
+                    entry.stamp = stamp;
+                    if (entry.matcher.matchesFolded(path)) {
+                        result.add(entry.value);
+                    }
+                }
+            }
+        }
+
+        private void removeFromMap(Map<String, List<Entry<T>>> map, Entry<T> entry) {
+            List<Entry<T>> list = map.get(entry.anchor);
+            if (list != null) {
+                list.remove(entry);
+                if (list.isEmpty()) {
+                    map.remove(entry.anchor);
+                }
+            }
+        }
+    }
+
+    /**
+     * A trie node with its children in a sorted array.
+     */
+    private static class TrieNode<T> {
+
+        private static final char[] NO_KEYS = new char[0];
+
+        final List<Entry<T>> entries = new ArrayList<>(1);
+        char[] keys = NO_KEYS;
+        TrieNode<T>[] children;
+
+        TrieNode<T> child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return (index >= 0) ? children[index] : null;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        TrieNode<T> childOrCreate(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            index = -index - 1;
+            TrieNode<T> child = new TrieNode<>();
+            char[] newKeys = new char[keys.length + 1];
+            TrieNode<T>[] newChildren = new TrieNode[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            if (children != null) {
+                System.arraycopy(children, 0, newChildren, 0, index);
+                System.arraycopy(children, index, newChildren, index + 1, keys.length - index);
+            }
+            newKeys[index] = c;
+            newChildren[index] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        void removeChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index < 0) {
+                return;
+            }
+
+            char[] newKeys = new char[keys.length - 1];
+            TrieNode<T>[] newChildren = new TrieNode[keys.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(children, index + 1, newChildren, index, keys.length - index - 1);
+            keys = newKeys;
+            children = newChildren;
+        }
+
+        boolean isUnused() {
+            return entries.isEmpty() && (keys.length == 0);
+        }
+
+        TrieNode<T> insert(String key, boolean reversed) {
+            TrieNode<T> node = this;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.childOrCreate(key.charAt(reversed ? key.length() - 1 - i : i));
+            }
+            return node;
+        }
+
+        /**
+         * Removes an entry and prunes the nodes that became unused.
+         */
+        void remove(String key, boolean reversed, Entry<T> entry) {
+            List<TrieNode<T>> nodes = new ArrayList<>(key.length() + 1);
+            TrieNode<T> node = this;
+            nodes.add(node);
+            for (int i = 0; (node != null) && (i < key.length()); i++) {
+                node = node.child(key.charAt(reversed ? key.length() - 1 - i : i));
+                nodes.add(node);
+            }
+            if (node == null) {
+                return;
+            }
+
+            node.entries.remove(entry);
+            for (int i = key.length(); (i > 0) && nodes.get(i).isUnused(); i--) {
+                nodes.get(i - 1).removeChild(key.charAt(reversed ? key.length() - i : i - 1));
+            }
+        }
+    }
+
+    /**
+     * An Aho-Corasick automaton over the {@code contains} anchors, rebuilt
+     * when the anchors change.
+     */
+    private static class AhoCorasick<T> {
+
+        final Node<T> root;
+
+        AhoCorasick(Map<String, List<Entry<T>>> patterns) {
+            this.root = new Node<>();
+            for (Map.Entry<String, List<Entry<T>>> pattern : patterns.entrySet()) {
+                Node<T> node = root;
+                String key = pattern.getKey();
+                for (int i = 0; i < key.length(); i++) {
+                    node = node.childOrCreate(key.charAt(i));
+                }
+                node.entries = pattern.getValue();
+            }
+            buildLinks();
+        }
+
+        Node<T> next(Node<T> state, char c) {
+            while (true) {
+                Node<T> child = state.child(c);
+                if (child != null) {
+                    return child;
+                }
+                if (state == root) {
+                    return root;
+                }
+                state = state.fail;
+            }
+        }
+
+        private void buildLinks() {
+            ArrayDeque<Node<T>> queue = new ArrayDeque<>();
+            root.fail = root;
+            for (int i = 0; i < root.keys.length; i++) {
+                Node<T> child = root.children[i];
+                child.fail = root;
+                child.output = (child.entries != null) ? child : null;
+                queue.add(child);
+            }
+
+            while (!queue.isEmpty()) {
+                Node<T> node = queue.poll();
+                for (int i = 0; i < node.keys.length; i++) {
+                    char c = node.keys[i];
+                    Node<T> child = node.children[i];
+                    Node<T> fail = next(node.fail, c);
+                    child.fail = (fail == child) ? root : fail;
+                    Node<T> inherited = child.fail.output;
+                    if (child.entries != null) {
+                        child.output = child;
+                        child.nextOutput = inherited;
+                    } else {
+                        child.output = inherited;
+                    }
+                    queue.add(child);
+                }
+            }
+        }
+
+        private static class Node<T> {
+
+            private static final char[] NO_KEYS = new char[0];
+
+            char[] keys = NO_KEYS;
+            Node<T>[] children;
+            Node<T> fail;
+            List<Entry<T>> entries;
+
+            /*
+             * The first node with entries among this node and its chain of
+             * failure links, and from there the next one.
+             */
+            Node<T> output;
+            Node<T> nextOutput;
+
+            Node<T> child(char c) {
+                int index = Arrays.binarySearch(keys, c);
+                return (index >= 0) ? children[index] : null;
+            }
+
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            Node<T> childOrCreate(char c) {
+                int index = Arrays.binarySearch(keys, c);
+                if (index >= 0) {
+                    return children[index];
+                }
+
+                index = -index - 1;
+                Node<T> child = new Node<>();
+                char[] newKeys = new char[keys.length + 1];
+                Node<T>[] newChildren = new Node[keys.length + 1];
+                System.arraycopy(keys, 0, newKeys, 0, index);
+                System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+                if (children != null) {
+                    System.arraycopy(children, 0, newChildren, 0, index);
+                    System.arraycopy(children, index, newChildren, index + 1, keys.length - index);
+                }
+                newKeys[index] = c;
+                newChildren[index] = child;
+                keys = newKeys;
+                children = newChildren;
+                return child;
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects outgoing JSON-RPC messages and sends them as a single JSON array.
+ *
+ * A batch is sent if it contains {@code maxMessages} messages, if it would
+ * grow beyond {@code maxBytes} characters, if the first message in the batch
+ * waited for {@code lingerMs} milliseconds or if {@link #flush()} is called.
+ * A batch containing just one message is sent as a plain JSON object.
+ *
+ * If batching is disabled, messages are sent immediately unless the batcher
+ * is corked. While corked, messages are collected regardless of the linger
+ * time and sent when the last {@link #uncork()} happens or a batch is full.
+ * This allows sending bulk operations in as few frames as possible.
+ *
+ * Batches are sent on the bulk lane of {@link SendLanes}.
+ */
+class MessageBatcher {
+
+    private final SendLanes lanes;
+    private final boolean batching;
+    private final ScheduledExecutorService executor;
+    private final int maxMessages;
+    private final int maxBytes;
+    private final int lingerMs;
+    private final StringBuilder batch;
+    private final Runnable lingerTask;
+
+    private int messages;
+    private boolean flushScheduled;
+    private volatile int corks;
+
+    MessageBatcher(SendLanes lanes, ScheduledExecutorService executor, PeerOptions options) {
+        if (options.maxBatchMessages <= 0) {
+            throw new IllegalArgumentException("maxBatchMessages");
+        }
+        if (options.maxBatchBytes <= 0) {
+            throw new IllegalArgumentException("maxBatchBytes");
+        }
+        if (options.maxBatchLingerMs < 0) {
+            throw new IllegalArgumentException("maxBatchLingerMs");
+        }
+
+        this.lanes = lanes;
+        this.batching = options.batching;
+        this.executor = executor;
+        this.maxMessages = options.maxBatchMessages;
+        this.maxBytes = options.maxBatchBytes;
+        this.lingerMs = options.maxBatchLingerMs;
+        this.batch = new StringBuilder(Math.min(maxBytes, 64 * 1024) + 2);
+        this.lingerTask = new LingerTask();
+    }
+
+    void send(String message) {
+        if (!batching && (corks == 0)) {
+            lanes.sendBulk(message);
+            return;
+        }
+
+        synchronized (this) {
+            append(message);
+        }
+    }
+
+    synchronized void cork() {
+        corks++;
+    }
+
+    synchronized void uncork() {
+        corks--;
+        if (corks == 0) {
+            flush();
+        }
+    }
+
+    private void append(String message) {
+        if ((messages > 0) && (batch.length() + message.length() + 1 > maxBytes)) {
+            sendBatch();
+        }
+
+        batch.append(messages == 0 ? '[' : ',');
+        batch.append(message);
+        messages++;
+
+        if ((messages >= maxMessages) || (batch.length() >= maxBytes) || (!batching && (corks == 0))) {
+            sendBatch();
+        } else if ((corks == 0) && !flushScheduled) {
+            scheduleFlush();
+        }
+    }
+
+    synchronized void flush() {
+        if (messages > 0) {
+            sendBatch();
+        }
+    }
+
+    private void scheduleFlush() {
+        try {
+            executor.schedule(lingerTask, lingerMs, TimeUnit.MILLISECONDS);
+            flushScheduled = true;
+        } catch (RejectedExecutionException e) {
+            sendBatch();
+        }
+    }
+
+    private void sendBatch() {
+        final String frame;
+        if (messages == 1) {
+            frame = batch.substring(1);
+        } else {
+            batch.append(']');
+            frame = batch.toString();
+        }
+
+        batch.setLength(0);
+        messages = 0;
+        lanes.sendBulk(frame);
+    }
+
+    private class LingerTask implements Runnable {
+
+        @Override
+        public void run() {
+            synchronized (MessageBatcher.this) {
+                flushScheduled = false;
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+/**
+ * A method owned by a {@link JetPeer}, together with everything required to
+ * add it again after a reconnect.
+ */
+class MethodRegistration {
+
+    final String path;
+    final MethodCallback callback;
+    final AsyncMethodCallback asyncCallback;
+    final String[] callGroups;
+    final String[] fetchGroups;
+    final int methodCallTimeoutMs;
+    final SerialExecutor callbacks;
+    CallbackMetrics callbackMetrics;
+
+    MethodRegistration(String path, String[] callGroups, String[] fetchGroups, MethodCallback callback, AsyncMethodCallback asyncCallback, int methodCallTimeoutMs, SerialExecutor callbacks) {
+        this.path = path;
+        this.callGroups = callGroups;
+        this.fetchGroups = fetchGroups;
+        this.callback = callback;
+        this.asyncCallback = asyncCallback;
+        this.methodCallTimeoutMs = methodCallTimeoutMs;
+        this.callbacks = callbacks;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TreeSet;
+
+/**
+ * A {@link Matcher} prepared for evaluation in the peer.
+ *
+ * Empty strings are treated as absent, like {@code fillPath} in
+ * {@link JetPeer} does. For case insensitive matchers all strings are folded
+ * once on creation. Two matchers selecting the same paths by the same rules
+ * have the same {@link #getKey() key}.
+ */
+class PathMatcher {
+
+    final boolean caseInsensitive;
+    final String equals;
+    final String equalsNot;
+    final String startsWith;
+    final String endsWith;
+    final String contains;
+    final String[] containsAllOf;
+
+    private final String key;
+
+    PathMatcher(Matcher matcher) {
+        this.caseInsensitive = matcher.caseInsensitive;
+        this.equals = prepare(matcher.equals);
+        this.equalsNot = prepare(matcher.equalsNot);
+        this.startsWith = prepare(matcher.startsWith);
+        this.endsWith = prepare(matcher.endsWith);
+        this.contains = prepare(matcher.contains);
+
+        TreeSet<String> all = new TreeSet<>();
+        if (matcher.containsAllOf != null) {
+            for (String part : matcher.containsAllOf) {
+                String folded = prepare(part);
+                if (folded != null) {
+                    all.add(folded);
+                }
+            }
+        }
+        this.containsAllOf = all.isEmpty() ? null : all.toArray(new String[all.size()]);
+
+        this.key = (caseInsensitive ? "i" : "s")
+                + '\u0000' + equals
+                + '\u0000' + equalsNot
+                + '\u0000' + startsWith
+                + '\u0000' + endsWith
+                + '\u0000' + contains
+                + '\u0000' + Arrays.toString(containsAllOf);
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    boolean matchesAll() {
+        return (equals == null) && (equalsNot == null) && (startsWith == null)
+                && (endsWith == null) && (contains == null) && (containsAllOf == null);
+    }
+
+    boolean matches(String path) {
+        return matchesFolded(caseInsensitive ? fold(path) : path);
+    }
+
+    /**
+     * @param path A path already folded if this matcher is case insensitive.
+     */
+    boolean matchesFolded(String path) {
+        if ((equals != null) && !path.equals(equals)) {
+            return false;
+        }
+        if ((equalsNot != null) && path.equals(equalsNot)) {
+            return false;
+        }
+        if ((startsWith != null) && !path.startsWith(startsWith)) {
+            return false;
+        }
+        if ((endsWith != null) && !path.endsWith(endsWith)) {
+            return false;
+        }
+        if ((contains != null) && !path.contains(contains)) {
+            return false;
+        }
+        if (containsAllOf != null) {
+            for (String part : containsAllOf) {
+                if (!path.contains(part)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if every path matched by {@code other} is also matched by this
+     * matcher. The check is conservative, it might return {@code false} for
+     * some matchers that actually cover each other.
+     */
+    boolean covers(PathMatcher other) {
+        if (matchesAll()) {
+            return true;
+        }
+
+        if (caseInsensitive != other.caseInsensitive) {
+            /*
+             * A case sensitive matcher can't cover a case insensitive one. The
+             * other way round the constraints of the case sensitive matcher
+             * still hold after folding.
+             */
+            if (!caseInsensitive) {
+                return false;
+            }
+            return covers(other.foldedCopy());
+        }
+
+        if ((equals != null) && !equals.equals(other.equals)) {
+            return false;
+        }
+        if ((startsWith != null) && !impliesPrefix(other, startsWith)) {
+            return false;
+        }
+        if ((endsWith != null) && !impliesSuffix(other, endsWith)) {
+            return false;
+        }
+        if ((contains != null) && !impliesSubstring(other, contains)) {
+            return false;
+        }
+        if (containsAllOf != null) {
+            for (String part : containsAllOf) {
+                if (!impliesSubstring(other, part)) {
+                    return false;
+                }
+            }
+        }
+        if ((equalsNot != null) && !equalsNot.equals(other.equalsNot) && other.matchesFolded(equalsNot)) {
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean impliesPrefix(PathMatcher other, String prefix) {
+        return ((other.equals != null) && other.equals.startsWith(prefix))
+                || ((other.startsWith != null) && other.startsWith.startsWith(prefix));
+    }
+
+    private static boolean impliesSuffix(PathMatcher other, String suffix) {
+        return ((other.equals != null) && other.equals.endsWith(suffix))
+                || ((other.endsWith != null) && other.endsWith.endsWith(suffix));
+    }
+
+    private static boolean impliesSubstring(PathMatcher other, String part) {
+        if (((other.equals != null) && other.equals.contains(part))
+                || ((other.startsWith != null) && other.startsWith.contains(part))
+                || ((other.endsWith != null) && other.endsWith.contains(part))
+                || ((other.contains != null) && other.contains.contains(part))) {
+            return true;
+        }
+        if (other.containsAllOf != null) {
+            for (String otherPart : other.containsAllOf) {
+                if (otherPart.contains(part)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private PathMatcher foldedCopy() {
+        Matcher matcher = new Matcher();
+        matcher.caseInsensitive = true;
+        matcher.equals = equals;
+        matcher.startsWith = startsWith;
+        matcher.endsWith = endsWith;
+        matcher.contains = contains;
+        matcher.containsAllOf = containsAllOf;
+        /*
+         * Excluding a single path case sensitively doesn't exclude its other
+         * spellings, so equalsNot is dropped.
+         */
+        return new PathMatcher(matcher);
+    }
+
+    static String fold(String s) {
+        return s.toLowerCase(Locale.ROOT);
+    }
+
+    private String prepare(String s) {
+        if ((s == null) || s.isEmpty()) {
+            return null;
+        }
+        return caseInsensitive ? fold(s) : s;
+    }
+}
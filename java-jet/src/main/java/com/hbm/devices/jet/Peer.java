@@ -26,6 +26,10 @@ package com.hbm.devices.jet;
 import com.google.gson.JsonElement;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public interface Peer extends Closeable {
 
@@ -36,12 +40,20 @@ public interface Peer extends Closeable {
 
     public boolean isConnected();
 
+    public void flush();
+
+    public CompletableFuture<Void> whenWritable();
+
     public void config(final String peerName, ResponseCallback responseCallback, int timeoutMs);
 
     public void authenticate(final String user, final String password, ResponseCallback responseCallback, int timeoutMs);
     public void passwd(final String user, final String password, ResponseCallback responseCallback, int timeoutMs);
     
     public FetchId fetch(Matcher matcher, FetchEventCallback callback, ResponseCallback responseCallback, int responseTimeoutMs);
+
+    public FetchId fetch(Matcher matcher, FetchEventCallback callback, Executor callbackExecutor, ResponseCallback responseCallback, int responseTimeoutMs);
+
+    public FetchId fetch(Matcher matcher, FetchSort sort, FetchEventCallback callback, ResponseCallback responseCallback, int responseTimeoutMs);
     
     public void get(Matcher matcher, ResponseCallback responseCallback, int responseTimeoutMs);
 
@@ -49,19 +61,39 @@ public interface Peer extends Closeable {
 
     public void set(String path, JsonElement value, ResponseCallback responseCallback, int responseTimeoutMs);
 
-    public void addState(String path, JsonElement value, StateCallback stateCallback, int stateSetTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs);
+    public StateHandle addState(String path, JsonElement value, StateCallback stateCallback, int stateSetTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs);
+
+    public StateHandle addState(String path, JsonElement value, String[] setGroups, String[] fetchGroups, StateCallback stateCallback, int stateSetTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs);
+
+    public StateHandle addState(String path, JsonElement value, String[] setGroups, String[] fetchGroups, StateCallback stateCallback, int stateSetTimeoutMs, Executor callbackExecutor, ResponseCallback responseCallback, int responseTimeoutMs);
+
+    public StateHandle addAsyncState(String path, JsonElement value, AsyncStateCallback stateCallback, int stateSetTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs);
 
-    public void addState(String path, JsonElement value, String[] setGroups, String[] fetchGroups, StateCallback stateCallback, int stateSetTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs);
+    public StateHandle addAsyncState(String path, JsonElement value, String[] setGroups, String[] fetchGroups, AsyncStateCallback stateCallback, int stateSetTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs);
+
+    public List<StateHandle> addStates(Collection<StateDefinition> states, BulkCallback callback, int responseTimeoutMs);
 
     public void removeState(String path, ResponseCallback responseCallback, int responseTimeoutMs);
+
+    public void removeStates(Collection<String> paths, BulkCallback callback, int responseTimeoutMs);
     
     public void change(String path, JsonElement value, ResponseCallback responseCallback, int responseTimeoutMs);
 
     public void addMethod(String path, MethodCallback methodCallback, int methodCallTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs);
     
     public void addMethod(String path, String[] callGroups, String[] fetchGroups, MethodCallback methodCallback, int methodCallTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs);
+
+    public void addMethod(String path, String[] callGroups, String[] fetchGroups, MethodCallback methodCallback, int methodCallTimeoutMs, Executor callbackExecutor, ResponseCallback responseCallback, int responseTimeoutMs);
+
+    public void addAsyncMethod(String path, AsyncMethodCallback methodCallback, int methodCallTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs);
+
+    public void addAsyncMethod(String path, String[] callGroups, String[] fetchGroups, AsyncMethodCallback methodCallback, int methodCallTimeoutMs, ResponseCallback responseCallback, int responseTimeoutMs);
     
+    public void addMethods(Collection<MethodDefinition> methods, BulkCallback callback, int responseTimeoutMs);
+
     public void removeMethod(String path, ResponseCallback responseCallback, int responseTimeoutMs);
+
+    public void removeMethods(Collection<String> paths, BulkCallback callback, int responseTimeoutMs);
     
     public void call(String path, JsonElement arguments, ResponseCallback responseCallback, int responseTimeoutMs);
 }
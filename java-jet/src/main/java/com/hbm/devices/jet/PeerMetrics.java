@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runtime metrics of a {@link JetPeer}.
+ *
+ * Request metrics are kept per JSON-RPC method, callback metrics per owned
+ * state, owned method and fetch. Metrics of removed states, methods and
+ * fetches are dropped. All values are cumulative since the peer was created.
+ *
+ * @see PeerOptions#metricsEnabled
+ */
+public final class PeerMetrics {
+
+    private final ConcurrentIntMap<?> openRequests;
+    private final JetConnection connection;
+    private final ConcurrentHashMap<String, RequestMetrics> requests;
+    private final ConcurrentHashMap<String, CallbackMetrics> stateCallbacks;
+    private final ConcurrentHashMap<String, CallbackMetrics> methodCallbacks;
+    private final ConcurrentHashMap<Integer, CallbackMetrics> fetchCallbacks;
+
+    PeerMetrics(ConcurrentIntMap<?> openRequests, JetConnection connection) {
+        this.openRequests = openRequests;
+        this.connection = connection;
+        this.requests = new ConcurrentHashMap<>();
+        this.stateCallbacks = new ConcurrentHashMap<>();
+        this.methodCallbacks = new ConcurrentHashMap<>();
+        this.fetchCallbacks = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return The number of requests currently waiting for a response.
+     */
+    public int getInFlightRequests() {
+        return openRequests.size();
+    }
+
+    public ConnectionMetrics getConnectionMetrics() {
+        return connection.getMetrics();
+    }
+
+    public Collection<RequestMetrics> getRequestMetrics() {
+        return Collections.unmodifiableCollection(requests.values());
+    }
+
+    /**
+     * @param method The JSON-RPC method, like {@code set} or {@code call}.
+     * @return The metrics of the method, {@code null} if no such request was
+     * sent yet.
+     */
+    public RequestMetrics getRequestMetrics(String method) {
+        return requests.get(method);
+    }
+
+    /**
+     * @return The callback metrics of all owned states, by path.
+     */
+    public Map<String, CallbackMetrics> getStateCallbackMetrics() {
+        return Collections.unmodifiableMap(stateCallbacks);
+    }
+
+    /**
+     * @return The callback metrics of all owned methods, by path.
+     */
+    public Map<String, CallbackMetrics> getMethodCallbackMetrics() {
+        return Collections.unmodifiableMap(methodCallbacks);
+    }
+
+    /**
+     * @return The callback metrics of all fetches, by {@link FetchId#getId()}.
+     */
+    public Map<Integer, CallbackMetrics> getFetchCallbackMetrics() {
+        return Collections.unmodifiableMap(fetchCallbacks);
+    }
+
+    RequestMetrics forMethod(String method) {
+        RequestMetrics metrics = requests.get(method);
+        if (metrics == null) {
+            RequestMetrics created = new RequestMetrics(method);
+            metrics = requests.putIfAbsent(method, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    CallbackMetrics addState(String path) {
+        CallbackMetrics metrics = new CallbackMetrics();
+        stateCallbacks.put(path, metrics);
+        return metrics;
+    }
+
+    void removeState(String path) {
+        stateCallbacks.remove(path);
+    }
+
+    CallbackMetrics addMethod(String path) {
+        CallbackMetrics metrics = new CallbackMetrics();
+        methodCallbacks.put(path, metrics);
+        return metrics;
+    }
+
+    void removeMethod(String path) {
+        methodCallbacks.remove(path);
+    }
+
+    CallbackMetrics addFetch(int id) {
+        CallbackMetrics metrics = new CallbackMetrics();
+        fetchCallbacks.put(id, metrics);
+        return metrics;
+    }
+
+    void removeFetch(int id) {
+        fetchCallbacks.remove(id);
+    }
+
+    /**
+     * Drops the callback metrics of all states, methods and fetches, which
+     * are all removed when the peer disconnects.
+     */
+    void removeCallbacks() {
+        stateCallbacks.clear();
+        methodCallbacks.clear();
+        fetchCallbacks.clear();
+    }
+}
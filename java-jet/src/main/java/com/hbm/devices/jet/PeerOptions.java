@@ -0,0 +1,143 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Tuning options for a {@link JetPeer}.
+ *
+ * The options are read once when the peer is created, changing them
+ * afterwards has no effect on an existing peer.
+ */
+public class PeerOptions {
+
+    /**
+     * If {@code true}, outgoing messages are collected and sent as a single
+     * JSON-RPC batch (a JSON array) instead of one frame per message.
+     */
+    public boolean batching = false;
+
+    /**
+     * The maximum number of messages in a single batch.
+     */
+    public int maxBatchMessages = 100;
+
+    /**
+     * The maximum size of a single batch, measured in characters of the
+     * serialized messages.
+     */
+    public int maxBatchBytes = 64 * 1024;
+
+    /**
+     * The maximum time in milliseconds a message might wait in a batch before
+     * the batch is sent.
+     */
+    public int maxBatchLingerMs = 1;
+
+    /**
+     * The granularity in milliseconds of response timeouts. Responses time
+     * out at most one tick later than requested.
+     */
+    public int timeoutTickMs = 10;
+
+    /**
+     * The number of ticks in one revolution of the timing wheel that manages
+     * response timeouts. Rounded up to the next power of two.
+     */
+    public int timeoutTicksPerWheel = 512;
+
+    /**
+     * The maximum number of requests waiting for a response. {@code 0} means
+     * unlimited.
+     */
+    public int maxInFlightRequests = 0;
+
+    /**
+     * The maximum number of bytes the connection might have queued for
+     * sending before new requests are held back. {@code 0} means unlimited.
+     * Only connections that send asynchronously queue bytes.
+     */
+    public long maxSendQueueBytes = 0;
+
+    /**
+     * What happens to a request if {@link #maxInFlightRequests} or
+     * {@link #maxSendQueueBytes} is reached.
+     */
+    public BackpressurePolicy backpressurePolicy = BackpressurePolicy.BLOCK;
+
+    /**
+     * The number of bytes the connection might have queued for sending before
+     * bulk messages are held back. Control messages ({@code call},
+     * {@code set}, {@code authenticate}, {@code config}, {@code passwd},
+     * {@code info} and responses to incoming {@code set} and {@code call}
+     * requests) skip held back bulk messages, so they never wait behind more
+     * than this number of bytes. A response to a {@code set} that changed the
+     * state follows the {@code change} notification on the bulk lane.
+     */
+    public long maxQueuedBulkBytes = 16 * 1024;
+
+    /**
+     * The executor running state, method, fetch and response callbacks.
+     * Callbacks of the same state, method or fetch keep their order, others
+     * run in parallel. {@code null} runs all callbacks on the thread that
+     * received the message. The executor is not shut down by the peer.
+     *
+     * @see CallbackExecutors
+     */
+    public Executor callbackExecutor = null;
+
+    /**
+     * If {@code true}, the peer records the {@link PeerMetrics} returned by
+     * {@link JetPeer#getMetrics()}. Implicitly enabled if there are
+     * {@link #metricsExporters}.
+     */
+    public boolean metricsEnabled = false;
+
+    /**
+     * The exporters called with the metrics of the peer every
+     * {@link #metricsExportIntervalMs}.
+     */
+    public List<MetricsExporter> metricsExporters = new ArrayList<>();
+
+    /**
+     * The interval in milliseconds in which the {@link #metricsExporters} are
+     * called.
+     */
+    public int metricsExportIntervalMs = 60000;
+
+    /**
+     * The interval in milliseconds in which changes held back by a
+     * {@link PublishPolicy} are sent.
+     */
+    public int publishTickMs = 10;
+
+    /**
+     * The policy used to reconnect after the connection to the daemon was
+     * lost. {@code null} disables automatic reconnects.
+     */
+    public ReconnectPolicy reconnectPolicy = null;
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+/**
+ * Limits how often a state published through a {@link StateHandle} sends
+ * {@code change} requests.
+ *
+ * Changes that are held back are conflated, only the latest value of a
+ * state is sent. Held back changes of all states of a peer are sent
+ * together in one frame on the next publish tick of the peer, see
+ * {@link PeerOptions#publishTickMs}. Changes with a response callback and
+ * changes via {@link JetPeer#change} bypass the policy.
+ */
+public class PublishPolicy {
+
+    /**
+     * The minimum time in milliseconds between two changes of the state,
+     * {@code 0} doesn't limit the rate.
+     */
+    public int minIntervalMs = 0;
+
+    /**
+     * If {@code true}, changes are never sent immediately but always
+     * conflated until the next publish tick.
+     */
+    public boolean conflate = false;
+
+    /**
+     * Numeric changes that differ from the last accepted value by at most
+     * this amount are dropped, {@code 0} disables the absolute deadband.
+     */
+    public double absoluteDeadband = 0;
+
+    /**
+     * Numeric changes that differ from the last accepted value by at most
+     * this fraction of it are dropped, {@code 0} disables the relative
+     * deadband.
+     */
+    public double relativeDeadband = 0;
+
+    boolean isInDeadband(double last, double value) {
+        final double delta = Math.abs(value - last);
+        if ((absoluteDeadband > 0) && (delta <= absoluteDeadband)) {
+            return true;
+        }
+        return (relativeDeadband > 0) && (delta <= relativeDeadband * Math.abs(last));
+    }
+}
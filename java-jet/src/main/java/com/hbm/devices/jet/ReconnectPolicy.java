@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Determines if and how a {@link JetPeer} reconnects after losing its
+ * connection.
+ *
+ * Reconnect attempts are delayed with exponential backoff. Each delay is
+ * randomly shortened by up to {@code jitter}, so many peers losing the same
+ * daemon don't reconnect all at once. After a successful reconnect the peer
+ * repeats {@code config} and {@code authenticate} and registers all its
+ * states, methods and fetches again.
+ */
+public class ReconnectPolicy {
+
+    /**
+     * The delay in milliseconds before the first reconnect attempt.
+     */
+    public int initialDelayMs = 100;
+
+    /**
+     * The upper bound for the delay in milliseconds between two attempts.
+     */
+    public int maxDelayMs = 30000;
+
+    /**
+     * The factor the delay grows with after each failed attempt.
+     */
+    public double multiplier = 2.0;
+
+    /**
+     * The fraction of the delay, between 0 and 1, that is randomly subtracted.
+     */
+    public double jitter = 0.2;
+
+    /**
+     * The maximum number of attempts after losing a connection, {@code 0}
+     * retries forever.
+     */
+    public int maxAttempts = 0;
+
+    /**
+     * The timeout in milliseconds of a single connection attempt.
+     */
+    public int connectTimeoutMs = 5000;
+
+    /**
+     * The response timeout in milliseconds for the requests that restore
+     * the registrations of the peer.
+     */
+    public int responseTimeoutMs = 5000;
+
+    long getDelayMs(int attempt) {
+        double delay = initialDelayMs * Math.pow(multiplier, attempt);
+        delay = Math.min(delay, maxDelayMs);
+        if (jitter > 0) {
+            delay -= delay * jitter * ThreadLocalRandom.current().nextDouble();
+        }
+        return Math.max(0, (long) delay);
+    }
+}
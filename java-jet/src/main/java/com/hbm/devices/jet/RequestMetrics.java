@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and round trip times of the requests of one JSON-RPC method, like
+ * {@code set} or {@code call}.
+ */
+public final class RequestMetrics {
+
+    private final String method;
+    private final LongAdder requests;
+    private final LongAdder errors;
+    private final LongAdder timeouts;
+    private final LatencyHistogram latency;
+
+    RequestMetrics(String method) {
+        this.method = method;
+        this.requests = new LongAdder();
+        this.errors = new LongAdder();
+        this.timeouts = new LongAdder();
+        this.latency = new LatencyHistogram();
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return The number of requests sent, including notifications that
+     * don't expect a response.
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return The number of responses carrying an error.
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return The number of requests that got no response in time.
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return The times between sending requests and receiving their
+     * responses.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    void sent() {
+        requests.increment();
+    }
+
+    void responded(long nanos, boolean error) {
+        latency.record(nanos);
+        if (error) {
+            errors.increment();
+        }
+    }
+
+    void timedOut() {
+        timeouts.increment();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.ArrayDeque;
+
+/**
+ * Schedules outgoing messages on a control and a bulk lane.
+ *
+ * Control messages are handed to the connection right away. Bulk messages
+ * are only handed over while the connection has less than
+ * {@code maxQueuedBytes} queued for sending, otherwise they wait in the bulk
+ * lane until the connection reports sent bytes. So a control message never
+ * queues behind more than {@code maxQueuedBytes} of bulk traffic. Messages of
+ * the same lane keep their order.
+ *
+ * Connections writing synchronously never queue, for them both lanes send
+ * immediately.
+ */
+class SendLanes {
+
+    private final JetConnection connection;
+    private final long maxQueuedBytes;
+    private final ArrayDeque<String> bulk;
+
+    SendLanes(JetConnection connection, PeerOptions options) {
+        if (options.maxQueuedBulkBytes <= 0) {
+            throw new IllegalArgumentException("maxQueuedBulkBytes");
+        }
+
+        this.connection = connection;
+        this.maxQueuedBytes = options.maxQueuedBulkBytes;
+        this.bulk = new ArrayDeque<>();
+    }
+
+    void sendControl(String message) {
+        connection.sendMessage(message);
+    }
+
+    synchronized void sendBulk(String message) {
+        if (bulk.isEmpty() && (connection.getQueuedBytes() < maxQueuedBytes)) {
+            connection.sendMessage(message);
+        } else {
+            bulk.add(message);
+        }
+    }
+
+    /**
+     * Hands waiting bulk messages to the connection. Called whenever the
+     * connection reports sent bytes.
+     */
+    synchronized void sent() {
+        while (!bulk.isEmpty() && (connection.getQueuedBytes() < maxQueuedBytes)) {
+            connection.sendMessage(bulk.poll());
+        }
+    }
+
+    /**
+     * Drops waiting bulk messages, they can't be sent on a new connection.
+     */
+    synchronized void clear() {
+        bulk.clear();
+    }
+}
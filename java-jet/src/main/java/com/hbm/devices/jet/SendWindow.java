@@ -0,0 +1,190 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of requests waiting for a response and the number of
+ * bytes queued by the connection.
+ *
+ * Capacity is checked before a request is sent, so a request is never
+ * dropped once it was accepted. Waiting threads and futures are woken when
+ * a response arrives or the connection reports sent bytes.
+ */
+class SendWindow {
+
+    private final JetConnection connection;
+    private final int maxInFlight;
+    private final long maxQueuedBytes;
+    private final BackpressurePolicy policy;
+    private final List<CompletableFuture<Void>> waiters;
+
+    private int inFlight;
+    private volatile int waiting;
+
+    SendWindow(JetConnection connection, PeerOptions options) {
+        if (options.maxInFlightRequests < 0) {
+            throw new IllegalArgumentException("maxInFlightRequests");
+        }
+        if (options.maxSendQueueBytes < 0) {
+            throw new IllegalArgumentException("maxSendQueueBytes");
+        }
+        if (options.backpressurePolicy == null) {
+            throw new NullPointerException("backpressurePolicy");
+        }
+
+        this.connection = connection;
+        this.maxInFlight = options.maxInFlightRequests;
+        this.maxQueuedBytes = options.maxSendQueueBytes;
+        this.policy = options.backpressurePolicy;
+        this.waiters = new ArrayList<>();
+    }
+
+    static boolean isEnabled(PeerOptions options) {
+        return (options.maxInFlightRequests > 0) || (options.maxSendQueueBytes > 0);
+    }
+
+    /**
+     * Takes a slot for a request, waiting for capacity if necessary.
+     *
+     * @throws RejectedExecutionException if there is no capacity and the
+     * policy is {@link BackpressurePolicy#FAIL}, or capacity didn't free up
+     * within {@code timeoutMs}.
+     */
+    synchronized void acquire(long timeoutMs) {
+        if (!hasCapacity()) {
+            if (policy == BackpressurePolicy.FAIL) {
+                throw new RejectedExecutionException(describe());
+            }
+            await(timeoutMs);
+        }
+        inFlight++;
+    }
+
+    /**
+     * Takes a slot for a request if there is capacity, without waiting.
+     */
+    synchronized boolean tryAcquire() {
+        if (!hasCapacity()) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    private void await(long timeoutMs) {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        waiting++;
+        try {
+            while (!hasCapacity()) {
+                final long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    throw new RejectedExecutionException(describe());
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("interrupted while waiting for capacity", e);
+        } finally {
+            waiting--;
+        }
+    }
+
+    /**
+     * Gives back the slot of a request that got its response or timed out.
+     */
+    void release() {
+        final List<CompletableFuture<Void>> ready;
+        synchronized (this) {
+            inFlight--;
+            ready = signal();
+        }
+        complete(ready);
+    }
+
+    /**
+     * Called whenever the connection reports bytes as sent.
+     */
+    void sent() {
+        if (waiting > 0) {
+            final List<CompletableFuture<Void>> ready;
+            synchronized (this) {
+                ready = signal();
+            }
+            complete(ready);
+        }
+    }
+
+    synchronized CompletableFuture<Void> whenWritable() {
+        if (hasCapacity()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        waiters.add(future);
+        waiting++;
+        return future;
+    }
+
+    private List<CompletableFuture<Void>> signal() {
+        notifyAll();
+        if (waiters.isEmpty() || !hasCapacity()) {
+            return null;
+        }
+
+        waiting -= waiters.size();
+        List<CompletableFuture<Void>> ready = new ArrayList<>(waiters);
+        waiters.clear();
+        return ready;
+    }
+
+    /*
+     * Futures are completed without holding the lock, their dependent stages
+     * might send requests right away.
+     */
+    private static void complete(List<CompletableFuture<Void>> ready) {
+        if (ready != null) {
+            for (CompletableFuture<Void> future : ready) {
+                future.complete(null);
+            }
+        }
+    }
+
+    private boolean hasCapacity() {
+        if ((maxInFlight > 0) && (inFlight >= maxInFlight)) {
+            return false;
+        }
+        return (maxQueuedBytes <= 0) || (connection.getQueuedBytes() < maxQueuedBytes);
+    }
+
+    private String describe() {
+        return "send window full: " + inFlight + " requests in flight, " + connection.getQueuedBytes() + " bytes queued";
+    }
+}
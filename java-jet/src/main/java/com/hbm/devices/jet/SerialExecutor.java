@@ -0,0 +1,109 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs tasks one after the other in submission order on an underlying
+ * executor.
+ *
+ * Each state, method and fetch of a {@link JetPeer} has its own serial
+ * executor. Callbacks for the same registration keep their order while
+ * callbacks of different registrations run in parallel. Without an
+ * underlying executor, or if it rejects a task, tasks are run directly by
+ * the calling thread.
+ */
+class SerialExecutor implements Executor {
+
+    private static final Logger LOGGER = Logger.getLogger(JetConstants.LOGGER_NAME);
+
+    private final Executor executor;
+    private final Queue<Runnable> tasks;
+    private final AtomicBoolean scheduled;
+    private final Runnable drain;
+
+    SerialExecutor(Executor executor) {
+        this.executor = executor;
+        this.tasks = (executor != null) ? new ConcurrentLinkedQueue<Runnable>() : null;
+        this.scheduled = new AtomicBoolean();
+        this.drain = new Drain();
+    }
+
+    boolean isInline() {
+        return executor == null;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (executor == null) {
+            task.run();
+            return;
+        }
+
+        tasks.add(task);
+        schedule();
+    }
+
+    private void schedule() {
+        if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(drain);
+            } catch (RejectedExecutionException e) {
+                /*
+                 * Dropping the queued tasks would leave set and call
+                 * requests unanswered, run them on the calling thread.
+                 */
+                LOGGER.log(Level.WARNING, "Callback executor rejected task, running callbacks inline", e);
+                drain.run();
+            }
+        }
+    }
+
+    private class Drain implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.SEVERE, "Exception in callback", e);
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+                schedule();
+            }
+        }
+    }
+}
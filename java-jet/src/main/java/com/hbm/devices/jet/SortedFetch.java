@@ -0,0 +1,264 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.io.Closeable;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A local copy of the window of a sorted fetch.
+ *
+ * Only the entries from {@link FetchSort#from} to {@link FetchSort#to} are
+ * transferred and stored, the daemon does the sorting. Each notification
+ * overwrites the slots of the changed entries and truncates the window to
+ * the announced size, so the costs of an update don't depend on the number
+ * of matching states. Reads might be issued from any thread.
+ */
+public class SortedFetch implements Closeable {
+
+    /**
+     * Notified after the window changed.
+     */
+    public interface Listener {
+
+        void onWindowChanged(SortedFetch fetch);
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(JetConstants.LOGGER_NAME);
+
+    private final Peer peer;
+    private final Matcher matcher;
+    private final FetchSort sort;
+    private final List<Listener> listeners;
+    private final ReadWriteLock lock;
+    private final String[] paths;
+    private final JsonElement[] values;
+
+    private int size;
+    private volatile FetchId fetchId;
+
+    public SortedFetch(Peer peer, Matcher matcher, FetchSort sort) {
+        if (!sort.isValid()) {
+            throw new IllegalArgumentException("sort");
+        }
+
+        this.peer = peer;
+        this.matcher = matcher;
+        this.sort = sort;
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.lock = new ReentrantReadWriteLock();
+        this.paths = new String[sort.getWindowSize()];
+        this.values = new JsonElement[sort.getWindowSize()];
+    }
+
+    /**
+     * Starts fetching the window.
+     *
+     * @param responseCallback A callback method that will be called if the
+     * fetch succeeds or fails.
+     * @param responseTimeoutMs The timeout in milliseconds how long the
+     * {@code fetch} operation might take before failing.
+     */
+    public void start(ResponseCallback responseCallback, int responseTimeoutMs) {
+        if (fetchId != null) {
+            throw new IllegalStateException("sorted fetch already started");
+        }
+        fetchId = peer.fetch(matcher, sort, new WindowUpdater(), responseCallback, responseTimeoutMs);
+    }
+
+    /**
+     * Stops fetching and empties the window.
+     */
+    @Override
+    public void close() {
+        FetchId id = fetchId;
+        fetchId = null;
+        if (id != null) {
+            peer.unfetch(id, null, 0);
+        }
+
+        lock.writeLock().lock();
+        try {
+            truncate(0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return The 1-based index in the sorted list of the first entry of the
+     * window.
+     */
+    public int getFrom() {
+        return sort.from;
+    }
+
+    /**
+     * @return The number of entries currently in the window.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param position The position in the window, {@code 0} is the entry at
+     * {@link FetchSort#from}.
+     * @return The path at {@code position}, {@code null} if the window is
+     * shorter.
+     */
+    public String getPath(int position) {
+        lock.readLock().lock();
+        try {
+            return (position >= 0) && (position < size) ? paths[position] : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param position The position in the window, {@code 0} is the entry at
+     * {@link FetchSort#from}.
+     * @return The value at {@code position}, {@code null} if the window is
+     * shorter.
+     */
+    public JsonElement getValue(int position) {
+        lock.readLock().lock();
+        try {
+            return (position >= 0) && (position < size) ? values[position] : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return A copy of the window in sort order.
+     */
+    public List<Map.Entry<String, JsonElement>> snapshot() {
+        lock.readLock().lock();
+        try {
+            List<Map.Entry<String, JsonElement>> snapshot = new ArrayList<>(size);
+            for (int position = 0; position < size; position++) {
+                snapshot.add(new AbstractMap.SimpleImmutableEntry<>(paths[position], values[position]));
+            }
+            return Collections.unmodifiableList(snapshot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(JsonObject params) {
+        JsonElement n = params.get("n");
+        JsonElement changes = params.get("changes");
+        if ((n == null) || !n.isJsonPrimitive()) {
+            LOGGER.log(Level.WARNING, "Notification of sorted fetch without window size: {0}", params);
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if ((changes != null) && changes.isJsonArray()) {
+                applyChanges(changes.getAsJsonArray());
+            }
+            truncate(Math.min(Math.max(n.getAsInt(), 0), paths.length));
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        for (Listener listener : listeners) {
+            try {
+                listener.onWindowChanged(this);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Exception in sorted fetch listener", e);
+            }
+        }
+    }
+
+    private void applyChanges(JsonArray changes) {
+        for (JsonElement element : changes) {
+            if (!element.isJsonObject()) {
+                continue;
+            }
+
+            JsonObject change = element.getAsJsonObject();
+            JsonElement index = change.get("index");
+            JsonElement path = change.get("path");
+            if ((index == null) || (path == null)) {
+                continue;
+            }
+
+            int position = index.getAsInt() - sort.from;
+            if ((position < 0) || (position >= paths.length)) {
+                continue;
+            }
+
+            paths[position] = path.getAsString();
+            values[position] = change.get("value");
+            if (position >= size) {
+                size = position + 1;
+            }
+        }
+    }
+
+    private void truncate(int newSize) {
+        if (newSize < size) {
+            Arrays.fill(paths, newSize, size, null);
+            Arrays.fill(values, newSize, size, null);
+        }
+        size = newSize;
+    }
+
+    private class WindowUpdater implements FetchEventCallback {
+
+        @Override
+        public void onFetchEvent(JsonObject params) {
+            apply(params);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * The daemon side of a sorted fetch in {@link EmbeddedJetDaemon}.
+ *
+ * Keeps all matching states ordered and remembers the window sent last, so
+ * every update yields only the entries that changed within the window.
+ */
+class SortedWindow {
+
+    private final int from;
+    private final String type;
+    private final String[] field;
+    private final TreeSet<Entry> sorted;
+    private final Map<String, Entry> entries;
+    private final String[] paths;
+    private final JsonElement[] values;
+    private int size;
+
+    SortedWindow(JsonObject sort) throws JsonRpcException {
+        this.from = getInt(sort, "from", 1);
+        int to = getInt(sort, "to", 10);
+        if ((from < 1) || (to < from)) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "invalid sort window");
+        }
+        if (to - from >= FetchSort.MAX_WINDOW_SIZE) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "sort window larger than " + FetchSort.MAX_WINDOW_SIZE);
+        }
+
+        JsonElement byValueField = sort.get("byValueField");
+        JsonElement byValue = sort.get("byValue");
+        if ((byValueField != null) && byValueField.isJsonObject() && (byValueField.getAsJsonObject().size() == 1)) {
+            Map.Entry<String, JsonElement> entry = byValueField.getAsJsonObject().entrySet().iterator().next();
+            this.field = entry.getKey().split("\\.");
+            this.type = entry.getValue().getAsString();
+        } else if ((byValue != null) && byValue.isJsonPrimitive()) {
+            this.field = null;
+            this.type = byValue.getAsString();
+        } else {
+            this.field = null;
+            this.type = null;
+        }
+
+        if ((type != null) && !FetchSort.NUMBER.equals(type) && !FetchSort.STRING.equals(type) && !FetchSort.BOOLEAN.equals(type)) {
+            throw new JsonRpcException(JsonRpcException.INVALID_PARAMS, "invalid sort type");
+        }
+
+        JsonElement descending = sort.get("descending");
+        Comparator<Entry> order = createOrder(type);
+        if ((descending != null) && descending.getAsBoolean()) {
+            order = order.reversed();
+        }
+        this.sorted = new TreeSet<>(order.thenComparing(new Comparator<Entry>() {
+            @Override
+            public int compare(Entry e1, Entry e2) {
+                return e1.path.compareTo(e2.path);
+            }
+        }));
+        this.entries = new HashMap<>();
+        this.paths = new String[to - from + 1];
+        this.values = new JsonElement[to - from + 1];
+    }
+
+    /**
+     * Updates a state, {@code value} is {@code null} if the state was removed.
+     */
+    void update(String path, JsonElement value) {
+        Entry old = entries.remove(path);
+        if (old != null) {
+            sorted.remove(old);
+        }
+
+        if (value == null) {
+            return;
+        }
+
+        JsonElement key = getKey(value);
+        if ((type == null) || (key != null)) {
+            Entry entry = new Entry(path, value, key);
+            entries.put(path, entry);
+            sorted.add(entry);
+        }
+    }
+
+    /**
+     * @return The parameters of the notification for the changes since the
+     * last call, {@code null} if the window didn't change.
+     */
+    JsonObject collectChanges() {
+        JsonArray changes = new JsonArray();
+        int position = 0;
+        int skip = from - 1;
+        Iterator<Entry> iterator = sorted.iterator();
+        while (iterator.hasNext() && (position < paths.length)) {
+            Entry entry = iterator.next();
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+
+            if (!entry.path.equals(paths[position]) || !Objects.equals(entry.value, values[position])) {
+                paths[position] = entry.path;
+                values[position] = entry.value;
+
+                JsonObject change = new JsonObject();
+                change.addProperty("path", entry.path);
+                change.add("value", entry.value);
+                change.addProperty("index", from + position);
+                changes.add(change);
+            }
+            position++;
+        }
+
+        if ((changes.size() == 0) && (position == size)) {
+            return null;
+        }
+
+        for (int i = position; i < size; i++) {
+            paths[i] = null;
+            values[i] = null;
+        }
+        size = position;
+
+        JsonObject params = new JsonObject();
+        params.addProperty("n", size);
+        params.add("changes", changes);
+        return params;
+    }
+
+    private JsonElement getKey(JsonElement value) {
+        if (type == null) {
+            return null;
+        }
+
+        JsonElement key = (field != null) ? ValueFilter.getField(value, field) : value;
+        if ((key == null) || !key.isJsonPrimitive()) {
+            return null;
+        }
+
+        JsonPrimitive primitive = key.getAsJsonPrimitive();
+        switch (type) {
+            case FetchSort.NUMBER:
+                return primitive.isNumber() ? primitive : null;
+            case FetchSort.STRING:
+                return primitive.isString() ? primitive : null;
+            default:
+                return primitive.isBoolean() ? primitive : null;
+        }
+    }
+
+    private static Comparator<Entry> createOrder(String type) {
+        if (type == null) {
+            return new Comparator<Entry>() {
+                @Override
+                public int compare(Entry e1, Entry e2) {
+                    return e1.path.compareTo(e2.path);
+                }
+            };
+        }
+
+        switch (type) {
+            case FetchSort.NUMBER:
+                return new Comparator<Entry>() {
+                    @Override
+                    public int compare(Entry e1, Entry e2) {
+                        return Double.compare(e1.key.getAsDouble(), e2.key.getAsDouble());
+                    }
+                };
+            case FetchSort.STRING:
+                return new Comparator<Entry>() {
+                    @Override
+                    public int compare(Entry e1, Entry e2) {
+                        return e1.key.getAsString().compareTo(e2.key.getAsString());
+                    }
+                };
+            default:
+                return new Comparator<Entry>() {
+                    @Override
+                    public int compare(Entry e1, Entry e2) {
+                        return Boolean.compare(e1.key.getAsBoolean(), e2.key.getAsBoolean());
+                    }
+                };
+        }
+    }
+
+    private static int getInt(JsonObject object, String name, int defaultValue) {
+        JsonElement element = object.get(name);
+        return ((element != null) && element.isJsonPrimitive()) ? element.getAsInt() : defaultValue;
+    }
+
+    private static class Entry {
+
+        final String path;
+        final JsonElement value;
+        final JsonElement key;
+
+        Entry(String path, JsonElement value, JsonElement key) {
+            this.path = path;
+            this.value = value;
+            this.key = key;
+        }
+    }
+}
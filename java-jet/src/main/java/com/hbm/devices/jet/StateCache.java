@@ -0,0 +1,510 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A local mirror of all states and methods matched by a {@link Matcher}.
+ *
+ * The cache fetches the matcher and applies every {@code add},
+ * {@code change} and {@code remove} notification. Reads are answered from
+ * memory without a request to the daemon and might be issued from any
+ * thread.
+ *
+ * Entries are stored in an open addressing table of parallel arrays, without
+ * an object per entry. Booleans and numbers are kept as primitives, strings
+ * as {@link String}s and arrays and objects in their compact JSON encoding.
+ * The typed getters like {@link #getDouble(String, double)} read values
+ * without allocating, {@link #get(String)} creates a new
+ * {@link JsonElement} on each call.
+ *
+ * If the peer loses its connection, the cache is emptied and listeners get a
+ * {@code remove} for every entry. After a reconnect the restored fetch fills
+ * it again.
+ */
+public class StateCache implements Closeable {
+
+    /**
+     * Notified after the cache applied a fetch notification.
+     */
+    public interface Listener {
+
+        void onStateChanged(FetchEvent event);
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(JetConstants.LOGGER_NAME);
+
+    private static final byte METHOD = 1;
+    private static final byte NULL = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte STRING = 6;
+    private static final byte JSON = 7;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Peer peer;
+    private final Matcher matcher;
+    private final List<Listener> listeners;
+    private final ReadWriteLock lock;
+
+    private String[] paths;
+    private byte[] kinds;
+    private long[] bits;
+    private String[] texts;
+    private int size;
+
+    private volatile FetchId fetchId;
+
+    public StateCache(Peer peer, Matcher matcher) {
+        this.peer = peer;
+        this.matcher = matcher;
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.lock = new ReentrantReadWriteLock();
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Starts fetching the matched states and methods.
+     *
+     * @param responseCallback A callback method that will be called if the
+     * fetch succeeds or fails.
+     * @param responseTimeoutMs The timeout in milliseconds how long the
+     * {@code fetch} operation might take before failing.
+     */
+    public void start(ResponseCallback responseCallback, int responseTimeoutMs) {
+        if (fetchId != null) {
+            throw new IllegalStateException("cache already started");
+        }
+        fetchId = peer.fetch(matcher, new CacheUpdater(), responseCallback, responseTimeoutMs);
+    }
+
+    /**
+     * Stops fetching and empties the cache.
+     */
+    @Override
+    public void close() {
+        FetchId id = fetchId;
+        fetchId = null;
+        if (id != null) {
+            peer.unfetch(id, null, 0);
+        }
+
+        lock.writeLock().lock();
+        try {
+            allocate(INITIAL_CAPACITY);
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String path) {
+        lock.readLock().lock();
+        try {
+            return find(path) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The current value of {@code path}, {@code null} if the path is
+     * unknown or a method.
+     */
+    public JsonElement get(String path) {
+        lock.readLock().lock();
+        try {
+            int slot = find(path);
+            return (slot >= 0) ? toJson(slot) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The current value of {@code path}, {@code defaultValue} if the
+     * path is unknown or its value is not a number.
+     */
+    public double getDouble(String path, double defaultValue) {
+        lock.readLock().lock();
+        try {
+            int slot = find(path);
+            if (slot < 0) {
+                return defaultValue;
+            }
+            switch (kinds[slot]) {
+                case DOUBLE:
+                    return Double.longBitsToDouble(bits[slot]);
+                case LONG:
+                    return bits[slot];
+                default:
+                    return defaultValue;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The current value of {@code path}, {@code defaultValue} if the
+     * path is unknown or its value is not an integral number.
+     */
+    public long getLong(String path, long defaultValue) {
+        lock.readLock().lock();
+        try {
+            int slot = find(path);
+            return ((slot >= 0) && (kinds[slot] == LONG)) ? bits[slot] : defaultValue;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The current value of {@code path}, {@code defaultValue} if the
+     * path is unknown or its value is not a boolean.
+     */
+    public boolean getBoolean(String path, boolean defaultValue) {
+        lock.readLock().lock();
+        try {
+            int slot = find(path);
+            return ((slot >= 0) && (kinds[slot] == BOOLEAN)) ? (bits[slot] != 0) : defaultValue;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The current value of {@code path}, {@code null} if the path is
+     * unknown or its value is not a string.
+     */
+    public String getString(String path) {
+        lock.readLock().lock();
+        try {
+            int slot = find(path);
+            return ((slot >= 0) && (kinds[slot] == STRING)) ? texts[slot] : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return A copy of all cached paths and their values, sorted by path.
+     * Methods are included with a {@link JsonNull} value.
+     */
+    public Map<String, JsonElement> snapshot() {
+        TreeMap<String, JsonElement> snapshot = new TreeMap<>();
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < paths.length; slot++) {
+                if (paths[slot] != null) {
+                    JsonElement value = toJson(slot);
+                    snapshot.put(paths[slot], (value != null) ? value : JsonNull.INSTANCE);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    private void apply(FetchEvent event) {
+        final String path = event.getPath();
+        if (path == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (FetchEvent.REMOVE.equals(event.getEvent())) {
+                remove(path);
+            } else {
+                put(path, event.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        for (Listener listener : listeners) {
+            try {
+                listener.onStateChanged(event);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Exception in state cache listener", e);
+            }
+        }
+    }
+
+    private void put(String path, JsonElement value) {
+        int slot = find(path);
+        if (slot < 0) {
+            if ((size + 1) * 4 > paths.length * 3) {
+                resize(paths.length * 2);
+            }
+            slot = freeSlot(path);
+            paths[slot] = path;
+            size++;
+        }
+        store(slot, value);
+    }
+
+    private void store(int slot, JsonElement value) {
+        texts[slot] = null;
+        bits[slot] = 0;
+        if (value == null) {
+            kinds[slot] = METHOD;
+        } else if (value.isJsonNull()) {
+            kinds[slot] = NULL;
+        } else if (value.isJsonPrimitive()) {
+            JsonPrimitive primitive = value.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                kinds[slot] = BOOLEAN;
+                bits[slot] = primitive.getAsBoolean() ? 1 : 0;
+            } else if (primitive.isNumber()) {
+                storeNumber(slot, primitive.getAsString());
+            } else {
+                kinds[slot] = STRING;
+                texts[slot] = primitive.getAsString();
+            }
+        } else {
+            kinds[slot] = JSON;
+            texts[slot] = value.toString();
+        }
+    }
+
+    private void storeNumber(int slot, String number) {
+        boolean integral = true;
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if ((c == '.') || (c == 'e') || (c == 'E')) {
+                integral = false;
+                break;
+            }
+        }
+
+        try {
+            if (integral) {
+                bits[slot] = Long.parseLong(number);
+                kinds[slot] = LONG;
+            } else {
+                bits[slot] = Double.doubleToRawLongBits(Double.parseDouble(number));
+                kinds[slot] = DOUBLE;
+            }
+        } catch (NumberFormatException e) {
+            /*
+             * Too large for a long, keep the exact text.
+             */
+            kinds[slot] = JSON;
+            texts[slot] = number;
+        }
+    }
+
+    private JsonElement toJson(int slot) {
+        switch (kinds[slot]) {
+            case NULL:
+                return JsonNull.INSTANCE;
+            case BOOLEAN:
+                return new JsonPrimitive(bits[slot] != 0);
+            case LONG:
+                return new JsonPrimitive(bits[slot]);
+            case DOUBLE:
+                return new JsonPrimitive(Double.longBitsToDouble(bits[slot]));
+            case STRING:
+                return new JsonPrimitive(texts[slot]);
+            case JSON:
+                return new JsonParser().parse(texts[slot]);
+            default:
+                return null;
+        }
+    }
+
+    private int find(String path) {
+        final int mask = paths.length - 1;
+        for (int slot = hash(path) & mask;; slot = (slot + 1) & mask) {
+            String candidate = paths[slot];
+            if (candidate == null) {
+                return -1;
+            }
+            if (candidate.equals(path)) {
+                return slot;
+            }
+        }
+    }
+
+    private int freeSlot(String path) {
+        final int mask = paths.length - 1;
+        int slot = hash(path) & mask;
+        while (paths[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /*
+     * Backward shift deletion, keeps the table free of tombstones.
+     */
+    private void remove(String path) {
+        int slot = find(path);
+        if (slot < 0) {
+            return;
+        }
+
+        final int mask = paths.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; paths[next] != null; next = (next + 1) & mask) {
+            int home = hash(paths[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                move(next, hole);
+                hole = next;
+            }
+        }
+        clear(hole);
+        size--;
+    }
+
+    private void move(int from, int to) {
+        paths[to] = paths[from];
+        kinds[to] = kinds[from];
+        bits[to] = bits[from];
+        texts[to] = texts[from];
+    }
+
+    private void clear(int slot) {
+        paths[slot] = null;
+        kinds[slot] = 0;
+        bits[slot] = 0;
+        texts[slot] = null;
+    }
+
+    private void allocate(int capacity) {
+        paths = new String[capacity];
+        kinds = new byte[capacity];
+        bits = new long[capacity];
+        texts = new String[capacity];
+    }
+
+    private void resize(int capacity) {
+        String[] oldPaths = paths;
+        byte[] oldKinds = kinds;
+        long[] oldBits = bits;
+        String[] oldTexts = texts;
+        allocate(capacity);
+        for (int i = 0; i < oldPaths.length; i++) {
+            if (oldPaths[i] != null) {
+                int slot = freeSlot(oldPaths[i]);
+                paths[slot] = oldPaths[i];
+                kinds[slot] = oldKinds[i];
+                bits[slot] = oldBits[i];
+                texts[slot] = oldTexts[i];
+            }
+        }
+    }
+
+    private static int hash(String path) {
+        int h = path.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private void clear() {
+        final String[] removed;
+        lock.writeLock().lock();
+        try {
+            removed = paths;
+            allocate(INITIAL_CAPACITY);
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (listeners.isEmpty()) {
+            return;
+        }
+        for (String path : removed) {
+            if (path == null) {
+                continue;
+            }
+
+            JsonObject params = new JsonObject();
+            params.addProperty("event", FetchEvent.REMOVE);
+            params.addProperty("path", path);
+            FetchEvent event = new FetchEvent(params);
+            for (Listener listener : listeners) {
+                try {
+                    listener.onStateChanged(event);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.SEVERE, "Exception in state cache listener", e);
+                }
+            }
+        }
+    }
+
+    private class CacheUpdater implements ResettableFetchCallback {
+
+        @Override
+        public void onFetchEvent(JsonObject params) {
+            apply(new FetchEvent(params));
+        }
+
+        @Override
+        public void onFetchReset() {
+            /*
+             * States removed while the connection was down would never be
+             * reported, so nothing cached so far can be trusted.
+             */
+            clear();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonElement;
+import java.util.concurrent.Executor;
+
+/**
+ * A state to add with {@link Peer#addStates(java.util.Collection, BulkCallback, int)}.
+ * The fields have the meaning of the parameters of the single
+ * {@code addState} methods.
+ */
+public class StateDefinition {
+
+    public String path;
+    public JsonElement value;
+    public String[] setGroups;
+    public String[] fetchGroups;
+
+    /**
+     * Called when the state is set via jet. If neither this nor
+     * {@link #asyncCallback} is set, the state is {@code fetchOnly}.
+     */
+    public StateCallback callback;
+
+    /**
+     * Called when the state is set via jet, the {@code set} is answered when
+     * the returned stage completes. Must not be combined with
+     * {@link #callback}.
+     */
+    public AsyncStateCallback asyncCallback;
+
+    public int stateSetTimeoutMs = 5000;
+
+    /**
+     * The executor running {@link #callback}, {@code null} uses the
+     * {@link PeerOptions#callbackExecutor} of the peer.
+     */
+    public Executor callbackExecutor;
+
+    public StateDefinition() {
+    }
+
+    public StateDefinition(String path, JsonElement value, StateCallback callback) {
+        this.path = path;
+        this.value = value;
+        this.callback = callback;
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A handle to a state owned by a {@link JetPeer}, returned by
+ * {@code addState}.
+ *
+ * The {@code change} request of the state is encoded only once, publishing
+ * a value just serializes the value into a reusable buffer. The primitive
+ * {@code change} overloads don't create any {@link JsonElement} at all.
+ * Changes published through a handle are sent without a response callback
+ * and obey the {@link PublishPolicy} of the handle.
+ */
+public class StateHandle {
+
+    private static final String SUFFIX = "}}";
+
+    private final JetPeer peer;
+    private final StateRegistration state;
+    private final Gson gson;
+    private final StringBuilder message;
+    private final int prefixLength;
+
+    private volatile PublishPolicy policy;
+    private long lastPublishNanos;
+    private double lastNumber = Double.NaN;
+    private boolean pending;
+
+    StateHandle(JetPeer peer, StateRegistration state, Gson gson) {
+        this.peer = peer;
+        this.state = state;
+        this.gson = gson;
+
+        String prefix = "{\"jsonrpc\":\"2.0\",\"method\":\"" + JetMethod.CHANGE + "\",\"params\":{\"path\":"
+                + gson.toJson(state.path) + ",\"value\":";
+        this.message = new StringBuilder(prefix.length() + 32);
+        this.message.append(prefix);
+        this.prefixLength = prefix.length();
+        this.lastPublishNanos = System.nanoTime();
+
+        JsonElement initialValue = state.getValue();
+        if ((initialValue != null) && isNumber(initialValue)) {
+            this.lastNumber = initialValue.getAsDouble();
+        }
+    }
+
+    public String getPath() {
+        return state.path;
+    }
+
+    public PublishPolicy getPublishPolicy() {
+        return policy;
+    }
+
+    /**
+     * Sets the policy for all following changes. A policy might be shared by
+     * several states, modifications of its fields take effect with the next
+     * change.
+     *
+     * @param policy The policy to use, {@code null} sends every change
+     * immediately.
+     */
+    public void setPublishPolicy(PublishPolicy policy) {
+        this.policy = policy;
+    }
+
+    public void change(JsonElement value) {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+
+        synchronized (this) {
+            if (isNumber(value)) {
+                if (isInDeadband(value.getAsDouble())) {
+                    return;
+                }
+            } else {
+                lastNumber = Double.NaN;
+            }
+            state.setValue(value);
+            publish();
+        }
+    }
+
+    /**
+     * @param value The new value, must be finite.
+     */
+    public void change(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("JSON can't represent " + value);
+        }
+
+        synchronized (this) {
+            if (isInDeadband(value)) {
+                return;
+            }
+            state.setValue(value);
+            publish();
+        }
+    }
+
+    public void change(long value) {
+        synchronized (this) {
+            if (isInDeadband(value)) {
+                return;
+            }
+            state.setValue(value);
+            publish();
+        }
+    }
+
+    public void change(boolean value) {
+        synchronized (this) {
+            lastNumber = Double.NaN;
+            state.setValue(value);
+            publish();
+        }
+    }
+
+    /**
+     * Changes the value immediately and reports the response of the daemon.
+     * The {@link PublishPolicy} doesn't apply.
+     *
+     * @param value The new value of the state.
+     * @param responseCallback A callback method that will be called if the
+     * change succeeds or fails.
+     * @param responseTimeoutMs The timeout in milliseconds how long the
+     * {@code change} operation might take before failing.
+     */
+    public void change(JsonElement value, ResponseCallback responseCallback, int responseTimeoutMs) {
+        peer.change(state.path, value, responseCallback, responseTimeoutMs);
+    }
+
+    /**
+     * Sends a held back change if the policy allows it.
+     *
+     * @return {@code false} if a change is still held back.
+     */
+    synchronized boolean publishPending(long nowNanos) {
+        if (!pending) {
+            return true;
+        }
+
+        PublishPolicy p = policy;
+        if ((p != null) && (nowNanos - lastPublishNanos < TimeUnit.MILLISECONDS.toNanos(p.minIntervalMs))) {
+            return false;
+        }
+
+        pending = false;
+        sendValue();
+        return true;
+    }
+
+    private boolean isInDeadband(double value) {
+        PublishPolicy p = policy;
+        if ((p != null) && p.isInDeadband(lastNumber, value)) {
+            return true;
+        }
+        lastNumber = value;
+        return false;
+    }
+
+    private void publish() {
+        PublishPolicy p = policy;
+        if (p == null) {
+            pending = false;
+            sendValue();
+            return;
+        }
+
+        if (pending) {
+            return;
+        }
+
+        if (!p.conflate && (System.nanoTime() - lastPublishNanos >= TimeUnit.MILLISECONDS.toNanos(p.minIntervalMs))) {
+            sendValue();
+            return;
+        }
+
+        pending = true;
+        peer.schedulePublish(this);
+    }
+
+    private void sendValue() {
+        message.setLength(prefixLength);
+        state.appendValue(message, gson);
+        message.append(SUFFIX);
+        peer.sendChange(state, message.toString());
+        lastPublishNanos = System.nanoTime();
+    }
+
+    private static boolean isNumber(JsonElement value) {
+        return value.isJsonPrimitive() && ((JsonPrimitive) value).isNumber();
+    }
+}
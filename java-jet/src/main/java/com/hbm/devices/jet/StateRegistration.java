@@ -0,0 +1,131 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * A state owned by a {@link JetPeer}, together with everything required to
+ * add it again after a reconnect.
+ *
+ * Numeric and boolean values published through a {@link StateHandle} are
+ * kept as primitives, the {@link JsonElement} is only created if the state
+ * has to be added again.
+ */
+class StateRegistration {
+
+    private static final int ELEMENT = 0;
+    private static final int DOUBLE = 1;
+    private static final int LONG = 2;
+    private static final int BOOLEAN = 3;
+
+    final String path;
+    final StateCallback callback;
+    final AsyncStateCallback asyncCallback;
+    final String[] setGroups;
+    final String[] fetchGroups;
+    final int stateSetTimeoutMs;
+    final SerialExecutor callbacks;
+    CallbackMetrics callbackMetrics;
+
+    private int kind;
+    private JsonElement value;
+    private double doubleValue;
+    private long longValue;
+    private boolean booleanValue;
+
+    StateRegistration(String path, JsonElement value, String[] setGroups, String[] fetchGroups, StateCallback callback, AsyncStateCallback asyncCallback, int stateSetTimeoutMs, SerialExecutor callbacks) {
+        this.path = path;
+        this.value = value;
+        this.kind = ELEMENT;
+        this.setGroups = setGroups;
+        this.fetchGroups = fetchGroups;
+        this.callback = callback;
+        this.asyncCallback = asyncCallback;
+        this.stateSetTimeoutMs = stateSetTimeoutMs;
+        this.callbacks = callbacks;
+    }
+
+    boolean isFetchOnly() {
+        return (callback == null) && (asyncCallback == null);
+    }
+
+    synchronized JsonElement getValue() {
+        switch (kind) {
+            case DOUBLE:
+                return new JsonPrimitive(doubleValue);
+            case LONG:
+                return new JsonPrimitive(longValue);
+            case BOOLEAN:
+                return new JsonPrimitive(booleanValue);
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Appends the JSON encoding of the current value.
+     */
+    synchronized void appendValue(StringBuilder builder, Gson gson) {
+        switch (kind) {
+            case DOUBLE:
+                builder.append(doubleValue);
+                break;
+            case LONG:
+                builder.append(longValue);
+                break;
+            case BOOLEAN:
+                builder.append(booleanValue);
+                break;
+            default:
+                builder.append(gson.toJson(value));
+                break;
+        }
+    }
+
+    synchronized void setValue(JsonElement value) {
+        this.kind = ELEMENT;
+        this.value = value;
+    }
+
+    synchronized void setValue(double value) {
+        this.kind = DOUBLE;
+        this.doubleValue = value;
+        this.value = null;
+    }
+
+    synchronized void setValue(long value) {
+        this.kind = LONG;
+        this.longValue = value;
+        this.value = null;
+    }
+
+    synchronized void setValue(boolean value) {
+        this.kind = BOOLEAN;
+        this.booleanValue = value;
+        this.value = null;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+
+/**
+ * Classifies incoming JSON-RPC messages without building a
+ * {@link JsonElement} tree for the complete message.
+ *
+ * The dispatcher reads {@code id} and {@code method} of each message and asks
+ * its {@link Handler} if somebody is interested in the message. Only the
+ * {@code params}, {@code result} or {@code error} members of interesting
+ * messages are materialized, all other values are skipped. If a member
+ * arrives before {@code id} or {@code method} it has to be materialized
+ * because the message can't be classified yet.
+ */
+class StreamingDispatcher {
+
+    interface Handler {
+
+        boolean hasFetch(int fetchId);
+
+        boolean hasRequest(int requestId);
+
+        boolean hasCallback(String path);
+
+        void onFetch(int fetchId, JsonObject params);
+
+        void onResponse(int requestId, JsonObject response);
+
+        /**
+         * Called for requests to states or methods owned by this peer.
+         *
+         * @param id The id of the request, {@code null} for notifications.
+         * @param path The path of the state or method, {@code null} if the
+         * message did not contain a method.
+         * @param params The parameters of the request, {@code null} if the
+         * message did not contain parameters.
+         */
+        void onRequest(JsonPrimitive id, String path, JsonElement params);
+    }
+
+    private static final int NONE = 0;
+    private static final int NUMBER = 1;
+    private static final int STRING = 2;
+    private static final int OTHER = 3;
+
+    private final JsonParser parser;
+    private final Handler handler;
+
+    StreamingDispatcher(Handler handler) {
+        this.parser = new JsonParser();
+        this.handler = handler;
+    }
+
+    void dispatch(String text) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(text));
+        reader.setLenient(true);
+
+        JsonToken token = reader.peek();
+        if (token == JsonToken.BEGIN_OBJECT) {
+            dispatchObject(reader);
+        } else if (token == JsonToken.BEGIN_ARRAY) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    dispatchObject(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endArray();
+        }
+    }
+
+    private void dispatchObject(JsonReader reader) throws IOException {
+        int idKind = NONE;
+        String id = null;
+        int methodKind = NONE;
+        String method = null;
+        boolean jsonrpc = false;
+        JsonElement params = null;
+        JsonElement result = null;
+        JsonElement error = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "id":
+                    idKind = kindOf(reader.peek());
+                    id = (idKind == OTHER) ? skip(reader) : reader.nextString();
+                    break;
+
+                case "method":
+                    methodKind = kindOf(reader.peek());
+                    method = (methodKind == OTHER) ? skip(reader) : reader.nextString();
+                    break;
+
+                case "params":
+                    if (isInteresting(methodKind, method)) {
+                        params = parser.parse(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+
+                case "result":
+                    if (isOpenResponse(methodKind, idKind, id)) {
+                        result = parser.parse(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+
+                case "error":
+                    if (isOpenResponse(methodKind, idKind, id)) {
+                        error = parser.parse(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+
+                case "jsonrpc":
+                    jsonrpc = true;
+                    reader.skipValue();
+                    break;
+
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (methodKind == NUMBER) {
+            if ((params != null) && params.isJsonObject()) {
+                handler.onFetch(parseInt(method), (JsonObject) params);
+            }
+            return;
+        }
+
+        if ((methodKind == NONE) && (idKind == NUMBER)) {
+            if ((result == null) && (error == null)) {
+                return;
+            }
+
+            JsonObject response = new JsonObject();
+            if (jsonrpc) {
+                response.addProperty("jsonrpc", "2.0");
+            }
+            response.add("id", createPrimitive(idKind, id));
+            if (result != null) {
+                response.add("result", result);
+            }
+            if (error != null) {
+                response.add("error", error);
+            }
+            handler.onResponse(parseInt(id), response);
+            return;
+        }
+
+        if ((methodKind == STRING) && !handler.hasCallback(method)) {
+            return;
+        }
+
+        handler.onRequest(createPrimitive(idKind, id), (methodKind == STRING) ? method : null, params);
+    }
+
+    private boolean isInteresting(int methodKind, String method) {
+        switch (methodKind) {
+            case NUMBER:
+                return handler.hasFetch(parseInt(method));
+            case STRING:
+                return handler.hasCallback(method);
+            default:
+                return true;
+        }
+    }
+
+    private boolean isOpenResponse(int methodKind, int idKind, String id) {
+        if (methodKind != NONE) {
+            return false;
+        }
+        if (idKind == NUMBER) {
+            return handler.hasRequest(parseInt(id));
+        }
+        return idKind == NONE;
+    }
+
+    private static int kindOf(JsonToken token) {
+        switch (token) {
+            case NUMBER:
+                return NUMBER;
+            case STRING:
+                return STRING;
+            default:
+                return OTHER;
+        }
+    }
+
+    private static String skip(JsonReader reader) throws IOException {
+        reader.skipValue();
+        return null;
+    }
+
+    private static JsonPrimitive createPrimitive(int kind, String value) {
+        switch (kind) {
+            case NUMBER:
+                try {
+                    return new JsonPrimitive(Long.parseLong(value));
+                } catch (NumberFormatException e) {
+                    return new JsonPrimitive(new BigDecimal(value));
+                }
+            case STRING:
+                return new JsonPrimitive(value);
+            default:
+                return null;
+        }
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return new BigDecimal(value).intValue();
+        }
+    }
+}
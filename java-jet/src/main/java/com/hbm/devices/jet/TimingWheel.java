@@ -0,0 +1,219 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hashed timing wheel for request timeouts.
+ *
+ * Time is divided into ticks of {@code tickMs} milliseconds. Each timeout is
+ * linked into the bucket of the tick it expires in, so scheduling and
+ * cancelling a timeout are O(1) and don't allocate. The wheel does not run a
+ * thread of its own, {@link #advance()} has to be called periodically (once
+ * per tick) and expires all timeouts of the elapsed ticks in bulk. Timeouts
+ * expire at the earliest after the requested delay and at the latest one
+ * tick later.
+ */
+class TimingWheel {
+
+    private static final Logger LOGGER = Logger.getLogger(JetConstants.LOGGER_NAME);
+
+    interface ExpiryHandler {
+
+        void expired(Timeout timeout);
+    }
+
+    /**
+     * An entry of the wheel. Classes that need a timeout extend this class,
+     * the wheel links the entries directly.
+     */
+    static class Timeout {
+
+        private volatile Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+        private long deadlineTick;
+    }
+
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long tickNanos;
+    private final long startNanos;
+    private final ExpiryHandler handler;
+
+    private long lastTick;
+
+    TimingWheel(long tickMs, int ticksPerWheel, ExpiryHandler handler) {
+        if (tickMs <= 0) {
+            throw new IllegalArgumentException("tickMs");
+        }
+        if (ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("ticksPerWheel");
+        }
+
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            this.wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.tickNanos = tickMs * 1000000L;
+        this.startNanos = System.nanoTime();
+        this.handler = handler;
+        this.lastTick = -1;
+    }
+
+    void schedule(Timeout timeout, long delayMs) {
+        if (timeout.bucket != null) {
+            throw new IllegalStateException("timeout already scheduled");
+        }
+
+        long deadline = (System.nanoTime() - startNanos + delayMs * 1000000L + tickNanos - 1) / tickNanos;
+        while (true) {
+            final Bucket bucket = wheel[(int) (deadline & mask)];
+            synchronized (bucket) {
+                if (deadline > bucket.processedTick) {
+                    timeout.deadlineTick = deadline;
+                    bucket.link(timeout);
+                    return;
+                }
+                /*
+                 * The tick of the deadline has already been processed,
+                 * expire with the next tick.
+                 */
+                deadline = bucket.processedTick + 1;
+            }
+        }
+    }
+
+    /**
+     * Removes a timeout from the wheel.
+     *
+     * @return {@code true} if the timeout was scheduled and has been removed
+     * before it expired.
+     */
+    boolean cancel(Timeout timeout) {
+        final Bucket bucket = timeout.bucket;
+        if (bucket == null) {
+            return false;
+        }
+
+        synchronized (bucket) {
+            if (timeout.bucket != bucket) {
+                return false;
+            }
+            bucket.unlink(timeout);
+            return true;
+        }
+    }
+
+    /**
+     * Expires all timeouts of the ticks elapsed since the last call.
+     */
+    synchronized void advance() {
+        final long now = (System.nanoTime() - startNanos) / tickNanos;
+        if (now - lastTick > wheel.length) {
+            /*
+             * We missed a whole revolution, every bucket has to be looked at
+             * once.
+             */
+            for (Bucket bucket : wheel) {
+                expire(bucket, now);
+            }
+        } else {
+            for (long tick = lastTick + 1; tick <= now; tick++) {
+                expire(wheel[(int) (tick & mask)], tick);
+            }
+        }
+        lastTick = now;
+    }
+
+    private void expire(Bucket bucket, long tick) {
+        Timeout expired = null;
+        synchronized (bucket) {
+            bucket.processedTick = tick;
+            Timeout timeout = bucket.head;
+            while (timeout != null) {
+                final Timeout next = timeout.next;
+                if (timeout.deadlineTick <= tick) {
+                    bucket.unlink(timeout);
+                    timeout.next = expired;
+                    expired = timeout;
+                }
+                timeout = next;
+            }
+        }
+
+        while (expired != null) {
+            final Timeout next = expired.next;
+            expired.next = null;
+            /*
+             * The expired entries are already unlinked, a failing handler
+             * must not keep the others from being delivered.
+             */
+            try {
+                handler.expired(expired);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Exception while expiring a timeout", e);
+            }
+            expired = next;
+        }
+    }
+
+    private static final class Bucket {
+
+        private Timeout head;
+        private long processedTick = -1;
+
+        private void link(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = null;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            head = timeout;
+        }
+
+        private void unlink(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A {@link JetConnection} to a daemon on the same machine via a Unix domain
+ * socket, using the same length-prefixed framing as
+ * {@link TcpJetConnection}.
+ *
+ * Requires Java 16 or newer at runtime, use {@link #isSupported()} to check.
+ */
+public class UnixDomainSocketJetConnection extends FramedJetConnection {
+
+    private final String path;
+
+    /**
+     * @param path The file system path of the daemon's socket.
+     * @throws UnsupportedOperationException if the JVM does not support Unix
+     * domain sockets.
+     */
+    public UnixDomainSocketJetConnection(final String path) {
+        if ((path == null) || (path.length() == 0)) {
+            throw new IllegalArgumentException("path");
+        }
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Unix domain sockets require Java 16 or newer");
+        }
+        this.path = path;
+    }
+
+    /**
+     * @return {@code true} if the running JVM supports Unix domain socket
+     * channels.
+     */
+    public static boolean isSupported() {
+        return UnixDomainSockets.isSupported();
+    }
+
+    @Override
+    SocketChannel open(int timeoutMs) throws IOException {
+        SocketChannel channel = UnixDomainSockets.openChannel();
+        try {
+            channel.connect(UnixDomainSockets.address(path));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    @Override
+    String getAddress() {
+        return path;
+    }
+}
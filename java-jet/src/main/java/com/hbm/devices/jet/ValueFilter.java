@@ -0,0 +1,214 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The value predicates of a {@link Matcher} prepared for evaluation in the
+ * peer or the {@link EmbeddedJetDaemon}.
+ *
+ * The predicates are copied on creation. A filter also tracks which paths
+ * currently match, so it can turn a {@code change} into an {@code add} or a
+ * {@code remove} when a value starts or stops matching, just like a daemon
+ * does. Two filters with the same predicates have the same
+ * {@link #getKey() key}.
+ */
+class ValueFilter {
+
+    private final Predicate value;
+    private final String[][] fields;
+    private final Predicate[] fieldPredicates;
+    private final String key;
+    private final Set<String> matching;
+
+    ValueFilter(Matcher matcher) {
+        this.value = (matcher.value != null) ? new Predicate(matcher.value) : null;
+
+        TreeMap<String, ValueMatcher> sorted = new TreeMap<>();
+        if (matcher.valueField != null) {
+            sorted.putAll(matcher.valueField);
+        }
+        this.fields = new String[sorted.size()][];
+        this.fieldPredicates = new Predicate[sorted.size()];
+
+        StringBuilder builder = new StringBuilder();
+        builder.append((value != null) ? value.key : "");
+        int i = 0;
+        for (Map.Entry<String, ValueMatcher> entry : sorted.entrySet()) {
+            fields[i] = entry.getKey().split("\\.");
+            fieldPredicates[i] = new Predicate(entry.getValue());
+            builder.append('\u0000').append(entry.getKey()).append('=').append(fieldPredicates[i].key);
+            i++;
+        }
+        this.key = builder.toString();
+        this.matching = new HashSet<>();
+    }
+
+    boolean isEmpty() {
+        return (value == null) && (fields.length == 0);
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * @param value The value of a state, {@code null} for methods.
+     */
+    boolean matches(JsonElement value) {
+        if (isEmpty()) {
+            return true;
+        }
+        if (value == null) {
+            return false;
+        }
+        if ((this.value != null) && !this.value.matches(value)) {
+            return false;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            JsonElement field = getField(value, fields[i]);
+            if ((field == null) || !fieldPredicates[i].matches(field)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decides how a fetch notification appears to a fetch with this filter.
+     *
+     * @return The event to deliver, {@code null} if the notification is
+     * filtered out.
+     */
+    String filter(String event, String path, JsonElement value) {
+        if (isEmpty()) {
+            return event;
+        }
+
+        if (FetchEvent.REMOVE.equals(event)) {
+            return matching.remove(path) ? event : null;
+        }
+
+        boolean wasMatching = matching.contains(path);
+        if (matches(value)) {
+            if (wasMatching) {
+                return event;
+            }
+            matching.add(path);
+            return FetchEvent.ADD;
+        }
+
+        if (wasMatching) {
+            matching.remove(path);
+            return FetchEvent.REMOVE;
+        }
+        return null;
+    }
+
+    /**
+     * @return The field of an object value, {@code null} if there is no
+     * such field.
+     */
+    static JsonElement getField(JsonElement value, String[] names) {
+        JsonElement field = value;
+        for (String name : names) {
+            if ((field == null) || !field.isJsonObject()) {
+                return null;
+            }
+            field = field.getAsJsonObject().get(name);
+        }
+        return field;
+    }
+
+    static String getType(JsonElement value) {
+        if (value.isJsonNull()) {
+            return ValueMatcher.NULL;
+        }
+        if (value.isJsonObject()) {
+            return ValueMatcher.OBJECT;
+        }
+        if (value.isJsonArray()) {
+            return ValueMatcher.ARRAY;
+        }
+
+        JsonPrimitive primitive = value.getAsJsonPrimitive();
+        if (primitive.isNumber()) {
+            return ValueMatcher.NUMBER;
+        }
+        if (primitive.isBoolean()) {
+            return ValueMatcher.BOOLEAN;
+        }
+        return ValueMatcher.STRING;
+    }
+
+    private static class Predicate {
+
+        final JsonElement equals;
+        final JsonElement equalsNot;
+        final Double lessThan;
+        final Double greaterThan;
+        final String isType;
+        final String key;
+
+        Predicate(ValueMatcher matcher) {
+            this.equals = matcher.equals;
+            this.equalsNot = matcher.equalsNot;
+            this.lessThan = matcher.lessThan;
+            this.greaterThan = matcher.greaterThan;
+            this.isType = matcher.isType;
+            this.key = equals + "," + equalsNot + "," + lessThan + "," + greaterThan + "," + isType;
+        }
+
+        boolean matches(JsonElement value) {
+            if ((equals != null) && !equals.equals(value)) {
+                return false;
+            }
+            if ((equalsNot != null) && equalsNot.equals(value)) {
+                return false;
+            }
+            if ((isType != null) && !isType.equals(getType(value))) {
+                return false;
+            }
+            if ((lessThan != null) || (greaterThan != null)) {
+                if (!ValueMatcher.NUMBER.equals(getType(value))) {
+                    return false;
+                }
+                double number = value.getAsDouble();
+                if ((lessThan != null) && !(number < lessThan)) {
+                    return false;
+                }
+                if ((greaterThan != null) && !(number > greaterThan)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2016 Hottinger Baldwin Messtechnik GmbH.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.hbm.devices.jet;
+
+import com.google.gson.JsonElement;
+
+/**
+ * Predicates on the value of a state, used in {@link Matcher#value} and
+ * {@link Matcher#valueField}. All predicates that are set must hold. Methods
+ * have no value and never match.
+ */
+public class ValueMatcher {
+
+    public static final String NUMBER = "number";
+    public static final String STRING = "string";
+    public static final String BOOLEAN = "boolean";
+    public static final String OBJECT = "object";
+    public static final String ARRAY = "array";
+    public static final String NULL = "null";
+
+    public JsonElement equals;
+    public JsonElement equalsNot;
+
+    /**
+     * Matches numbers less than this value.
+     */
+    public Double lessThan;
+
+    /**
+     * Matches numbers greater than this value.
+     */
+    public Double greaterThan;
+
+    /**
+     * Matches values of this type, one of {@link #NUMBER}, {@link #STRING},
+     * {@link #BOOLEAN}, {@link #OBJECT}, {@link #ARRAY} or {@link #NULL}.
+     */
+    public String isType;
+}
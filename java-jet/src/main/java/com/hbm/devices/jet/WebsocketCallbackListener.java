@@ -26,6 +26,7 @@ package com.hbm.devices.jet;
 import com.neovisionaries.ws.client.WebSocket;
 import com.neovisionaries.ws.client.WebSocketAdapter;
 import com.neovisionaries.ws.client.WebSocketException;
+import com.neovisionaries.ws.client.WebSocketFrame;
 import java.util.List;
 import java.util.Map;
 
@@ -51,6 +52,35 @@ class WebsocketCallbackListener extends WebSocketAdapter {
         connection.connectCompleted(false);
     }
 
+    @Override
+    public void onDisconnected(WebSocket websocket, WebSocketFrame serverCloseFrame, WebSocketFrame clientCloseFrame, boolean closedByServer) throws Exception {
+        connection.onDisconnected();
+    }
+
+    @Override
+    public void onTextFrame(WebSocket websocket, WebSocketFrame frame) throws Exception {
+        connection.countReceived(frame.getPayloadLength());
+    }
+
+    @Override
+    public void onContinuationFrame(WebSocket websocket, WebSocketFrame frame) throws Exception {
+        connection.countReceived(frame.getPayloadLength());
+    }
+
+    @Override
+    public void onFrameSent(WebSocket websocket, WebSocketFrame frame) throws Exception {
+        if (frame.isTextFrame()) {
+            connection.dequeued(frame.getPayloadLength());
+        }
+    }
+
+    @Override
+    public void onFrameUnsent(WebSocket websocket, WebSocketFrame frame) throws Exception {
+        if (frame.isTextFrame()) {
+            connection.dequeued(frame.getPayloadLength());
+        }
+    }
+
     @Override
     public void onTextMessage(WebSocket webSocket, String text) throws Exception {
         connection.onTextMessage(text);
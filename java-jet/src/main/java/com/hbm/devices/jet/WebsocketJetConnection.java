@@ -26,6 +26,7 @@ package com.hbm.devices.jet;
 import com.neovisionaries.ws.client.WebSocket;
 import com.neovisionaries.ws.client.WebSocketCloseCode;
 import com.neovisionaries.ws.client.WebSocketFactory;
+import com.neovisionaries.ws.client.WebSocketFrame;
 
 import java.io.IOException;
 import java.util.logging.Level;
@@ -38,7 +39,7 @@ public class WebsocketJetConnection extends JetConnection {
     private WebSocket ws;
     private SSLContext context;
     private ConnectionCompleted completed;
-    private boolean connected;
+    private volatile boolean connected;
     private boolean verifyHostname;
 
     public WebsocketJetConnection(final String url, final SSLContext sslContext, final boolean verifyHostname) {
@@ -65,6 +66,7 @@ public class WebsocketJetConnection extends JetConnection {
 
             factory.setVerifyHostname(verifyHostname);
 
+            resetQueuedBytes();
             ws = factory.createSocket(url, timeoutMs);
             WebsocketCallbackListener listener = new WebsocketCallbackListener(this);
             ws.addListener(listener);
@@ -72,6 +74,7 @@ public class WebsocketJetConnection extends JetConnection {
             ws.connectAsynchronously();
         } catch (IOException ex) {
             Logger.getLogger(WebsocketJetConnection.class.getName()).log(Level.SEVERE, null, ex);
+            completed.completed(false);
         }
     }
 
@@ -83,7 +86,14 @@ public class WebsocketJetConnection extends JetConnection {
 
     @Override
     public void sendMessage(String message) {
-        ws.sendText(message);
+        /*
+         * The frame is created here to account for the exact payload size,
+         * WebSocket.sendText() would encode the text the same way.
+         */
+        WebSocketFrame frame = WebSocketFrame.createTextFrame(message);
+        countSent(frame.getPayloadLength());
+        enqueued(frame.getPayloadLength());
+        ws.sendFrame(frame);
     }
 
     @Override
@@ -92,10 +102,15 @@ public class WebsocketJetConnection extends JetConnection {
     }
 
     void connectCompleted(boolean success) {
-        this.completed.completed(success);
         if (success) {
             this.connected = true;
         }
+        this.completed.completed(success);
+    }
+
+    void onDisconnected() {
+        this.connected = false;
+        notifyDisconnected();
     }
 
     void onTextMessage(String text) {